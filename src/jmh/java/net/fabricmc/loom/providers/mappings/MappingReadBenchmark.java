@@ -0,0 +1,243 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2019 Chocohead
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.fabricmc.loom.providers.mappings;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import com.google.common.collect.Iterables;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares reading mappings into a {@link MappingBlob} through the {@link TinyReader} and {@link EnigmaReader} against
+ * the readers they replaced ({@link BaselineTinyReader} and {@link BaselineEnigmaReader}).
+ *
+ * <p>Run with {@code gradlew jmh "-PjmhArgs=MappingReadBenchmark -prof gc -p tiny=<intermediary .tiny> -p enigma=<yarn enigma .zip>"},
+ * leaving out either file to read generated mappings of the same shape instead. Running this class's {@link #main(String[])} with the
+ * same files prints how much heap each read leaves behind.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(value = 2, jvmArgs = "-Xmx2G")
+public class MappingReadBenchmark {
+	private static final String GENERATED = "generated";
+	/** About the number of classes in intermediary for 1.14.4 */
+	private static final int CLASSES = 6500;
+
+	@Param(GENERATED)
+	public String tiny;
+	@Param(GENERATED)
+	public String enigma;
+	private Path tinyFile, enigmaFile;
+
+	@Setup
+	public void setup() throws IOException {
+		tinyFile = GENERATED.equals(tiny) ? generateTiny() : Paths.get(tiny);
+		enigmaFile = GENERATED.equals(enigma) ? generateEnigma() : Paths.get(enigma);
+	}
+
+	private static String obfName(int index) {
+		StringBuilder out = new StringBuilder();
+
+		do {
+			out.append((char) ('a' + index % 26));
+			index /= 26;
+		} while (index > 0);
+
+		return out.reverse().toString();
+	}
+
+	private static String descriptor(Random random, String prefix) {
+		switch (random.nextInt(4)) {
+		case 0:
+			return "I";
+		case 1:
+			return "Ljava/lang/String;";
+		default:
+			return 'L' + prefix + obfName(random.nextInt(CLASSES)) + ';';
+		}
+	}
+
+	private static String methodDescriptor(Random random, String prefix) {
+		StringBuilder out = new StringBuilder().append('(');
+		for (int i = random.nextInt(3); i > 0; i--) {
+			out.append(descriptor(random, prefix));
+		}
+		return out.append(')').append(random.nextBoolean() ? "V" : descriptor(random, prefix)).toString();
+	}
+
+	/** Mappings in the shape of intermediary's, official to intermediary names */
+	private static Path generateTiny() throws IOException {
+		Random random = new Random(42);
+		Path file = Files.createTempFile("intermediary", ".tiny");
+		file.toFile().deleteOnExit();
+		int fields = 0, methods = 0;
+
+		try (Writer out = Files.newBufferedWriter(file)) {
+			out.write("v1\tofficial\tintermediary\n");
+
+			for (int i = 0; i < CLASSES; i++) {
+				String name = obfName(i);
+				out.write("CLASS\t" + name + "\tnet/minecraft/class_" + i + '\n');
+
+				for (int j = random.nextInt(8); j > 0; j--) {
+					out.write("FIELD\t" + name + '\t' + descriptor(random, "") + '\t' + obfName(j) + "\tfield_" + fields++ + '\n');
+				}
+				for (int j = random.nextInt(12); j > 0; j--) {
+					out.write("METHOD\t" + name + '\t' + methodDescriptor(random, "") + '\t' + obfName(j) + "\tmethod_" + methods++ + '\n');
+				}
+			}
+		}
+
+		return file;
+	}
+
+	/** Mappings in the shape of Yarn's enigma zip, a file per class of intermediary to named names */
+	private static Path generateEnigma() throws IOException {
+		Random random = new Random(42);
+		Path file = Files.createTempFile("yarn", ".zip");
+		file.toFile().deleteOnExit();
+		int fields = 0, methods = 0;
+
+		try (ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+			for (int i = 0; i < CLASSES; i++) {
+				StringBuilder mapping = new StringBuilder();
+				mapping.append("CLASS net/minecraft/class_").append(i).append(" net/minecraft/named/Class").append(i).append('\n');
+
+				for (int j = random.nextInt(8); j > 0; j--) {
+					mapping.append("\tFIELD field_").append(fields++).append(" field").append(j).append(' ')
+						.append(descriptor(random, "net/minecraft/class_")).append('\n');
+				}
+				for (int j = random.nextInt(12); j > 0; j--) {
+					mapping.append("\tMETHOD method_").append(methods++).append(" method").append(j).append(' ')
+						.append(methodDescriptor(random, "net/minecraft/class_")).append('\n');
+
+					for (int k = random.nextInt(3); k > 0; k--) {
+						mapping.append("\t\tARG ").append(k).append(" arg").append(k).append('\n');
+					}
+				}
+
+				out.putNextEntry(new ZipEntry("mappings/net/minecraft/class_" + i + ".mapping"));
+				out.write(mapping.toString().getBytes(StandardCharsets.UTF_8));
+				out.closeEntry();
+			}
+		}
+
+		return file;
+	}
+
+	@Benchmark
+	public MappingBlob tinyBaseline() throws IOException {
+		MappingBlob mappings = new MappingBlob();
+		BaselineTinyReader.readTiny(tinyFile, mappings);
+		return mappings;
+	}
+
+	@Benchmark
+	public MappingBlob tinyTokenized() throws IOException {
+		MappingBlob mappings = new MappingBlob();
+		TinyReader.readTiny(tinyFile, mappings);
+		return mappings;
+	}
+
+	@Benchmark
+	public MappingBlob enigmaBaseline() throws IOException {
+		MappingBlob mappings = new MappingBlob();
+		BaselineEnigmaReader.readEnigma(enigmaFile, mappings);
+		return mappings;
+	}
+
+	@Benchmark
+	public MappingBlob enigmaTokenized() throws IOException {
+		MappingBlob mappings = new MappingBlob();
+		EnigmaReader.readEnigma(enigmaFile, mappings);
+		return mappings;
+	}
+
+	@Benchmark
+	public MappingBlob enigmaParallel() throws IOException {
+		return EnigmaReader.readEnigmaParallel(enigmaFile);
+	}
+
+	private interface Read {
+		MappingBlob read(MappingReadBenchmark benchmark) throws IOException;
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+
+		for (int i = 0; i < 5; i++) {
+			System.gc();
+		}
+
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private static void retained(MappingReadBenchmark benchmark, String name, Read read) throws IOException {
+		read.read(benchmark); //Load and warm everything the read needs first, so it isn't counted
+
+		long before = usedHeap();
+		MappingBlob mappings = read.read(benchmark);
+		long after = usedHeap();
+
+		System.out.printf("%-16s %6.2f MB retained (%d classes)%n", name, (after - before) / (1024D * 1024D), Iterables.size(mappings));
+	}
+
+	/** Print the heap each way of reading leaves behind in the resulting {@link MappingBlob}, taking the same files as the benchmark as arguments */
+	public static void main(String[] args) throws IOException {
+		MappingReadBenchmark benchmark = new MappingReadBenchmark();
+		benchmark.tiny = args.length > 0 ? args[0] : GENERATED;
+		benchmark.enigma = args.length > 1 ? args[1] : GENERATED;
+		benchmark.setup();
+
+		retained(benchmark, "tinyBaseline", MappingReadBenchmark::tinyBaseline);
+		retained(benchmark, "tinyTokenized", MappingReadBenchmark::tinyTokenized);
+		retained(benchmark, "enigmaBaseline", MappingReadBenchmark::enigmaBaseline);
+		retained(benchmark, "enigmaTokenized", MappingReadBenchmark::enigmaTokenized);
+		retained(benchmark, "enigmaParallel", MappingReadBenchmark::enigmaParallel);
+	}
+}
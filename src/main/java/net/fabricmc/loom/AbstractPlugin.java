@@ -53,6 +53,7 @@ import org.gradle.api.plugins.JavaPlugin;
 import org.gradle.api.plugins.JavaPluginConvention;
 import org.gradle.api.publish.Publication;
 import org.gradle.api.publish.PublishingExtension;
+import org.gradle.api.publish.maven.MavenArtifact;
 import org.gradle.api.publish.maven.MavenPublication;
 import org.gradle.api.tasks.SourceSet;
 import org.gradle.api.tasks.bundling.AbstractArchiveTask;
@@ -64,6 +65,7 @@ import org.gradle.plugins.ide.idea.model.IdeaModel;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Optional;
@@ -375,11 +377,21 @@ public class AbstractPlugin implements Plugin<Project> {
 				try {
 					AbstractArchiveTask sourcesTask = (AbstractArchiveTask) project1.getTasks().getByName("sourcesJar");
 					RemapSourcesJarTask remapSourcesJarTask = (RemapSourcesJarTask) project1.getTasks().findByName("remapSourcesJar");
+
+					//As with the jar, the sources jar is moved aside so the remapped sources can take its place without overlapping it
+					File remappedSources = sourcesTask.getArchivePath();
+					String sourcesClassifier = sourcesTask.getClassifier();
+					sourcesTask.setClassifier(sourcesClassifier == null || sourcesClassifier.isEmpty() ? "dev" : sourcesClassifier + "-dev");
+
 					remapSourcesJarTask.setInput(sourcesTask.getArchivePath());
-					remapSourcesJarTask.setOutput(sourcesTask.getArchivePath());
+					remapSourcesJarTask.setOutput(remappedSources);
 					remapSourcesJarTask.doLast(task -> project1.getArtifacts().add("archives", remapSourcesJarTask.getOutput()));
 					remapSourcesJarTask.dependsOn(project1.getTasks().getByName("sourcesJar"));
+					//The unmapped jar is on the remapping classpath, so needs to be made first for the remapped sources to always come out the same
+					remapSourcesJarTask.dependsOn(jarTask);
 					project1.getTasks().getByName("build").dependsOn(remapSourcesJarTask);
+
+					publishRemappedSources(project1, sourcesTask.getArchivePath(), remapSourcesJarTask, sourcesClassifier);
 				} catch (UnknownTaskException e) {
 					// pass
 				}
@@ -390,6 +402,25 @@ public class AbstractPlugin implements Plugin<Project> {
 		});
 	}
 
+	/** Swap any publication of the given (unmapped) sources jar over to the remapped sources jar */
+	private static void publishRemappedSources(Project project, File sourcesJar, RemapSourcesJarTask remapSourcesJarTask, String classifier) {
+		PublishingExtension publishing = project.getExtensions().findByType(PublishingExtension.class);
+		if (publishing == null) return;
+
+		publishing.getPublications().withType(MavenPublication.class).all(publication -> {
+			for (MavenArtifact artifact : new ArrayList<>(publication.getArtifacts())) {
+				if (!sourcesJar.equals(artifact.getFile())) continue;
+
+				publication.getArtifacts().remove(artifact);
+				publication.artifact(remapSourcesJarTask.getOutput(), remapped -> {
+					remapped.setClassifier(classifier);
+					remapped.setExtension(artifact.getExtension());
+					remapped.builtBy(remapSourcesJarTask);
+				});
+			}
+		});
+	}
+
 	protected void configureMaven() {
 		project.afterEvaluate((p) -> {
 			for (RemappedConfigurationEntry entry : Constants.MOD_COMPILE_ENTRIES) {
@@ -49,6 +49,8 @@ public class LoomGradleExtension {
 	public boolean remapMod = true;
 	public boolean autoGenIDERuns = true;
 	public boolean extractJars = false;
+	/** The most groups of mods which will be remapped at once, or {@code 0} to pick based on the processors and memory available */
+	public int modRemapParallelism = 0;
 	public String customManifest = null;
 
 	private File atFile;
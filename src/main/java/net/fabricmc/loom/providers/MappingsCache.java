@@ -24,12 +24,12 @@
 
 package net.fabricmc.loom.providers;
 
+import net.fabricmc.loom.providers.mappings.NamespaceIndex;
+import net.fabricmc.loom.providers.mappings.TinyBinary;
 import net.fabricmc.loom.util.StaticPathWatcher;
 import net.fabricmc.mappings.Mappings;
-import net.fabricmc.mappings.MappingsProvider;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.lang.ref.SoftReference;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -40,23 +40,48 @@ public final class MappingsCache {
     public static final MappingsCache INSTANCE = new MappingsCache();
 
     private final Map<Path, SoftReference<Mappings>> mappingsCache = new HashMap<>();
+    private final Map<Path, SoftReference<NamespaceIndex>> indexCache = new HashMap<>();
 
     public Mappings get(Path mappingsPath) throws IOException {
         mappingsPath = mappingsPath.toAbsolutePath();
         if (StaticPathWatcher.INSTANCE.hasFileChanged(mappingsPath)) {
             mappingsCache.remove(mappingsPath);
+            indexCache.remove(mappingsPath);
         }
 
         SoftReference<Mappings> ref = mappingsCache.get(mappingsPath);
         Mappings mappings = ref != null ? ref.get() : null;
 
         if (mappings == null) {
-        	try (InputStream stream = Files.newInputStream(mappingsPath)) {
-                mappings = MappingsProvider.readTinyMappings(stream, false);
-                mappingsCache.put(mappingsPath, new SoftReference<>(mappings));
-            }
+            mappings = TinyBinary.read(mappingsPath);
+            mappingsCache.put(mappingsPath, new SoftReference<>(mappings));
         }
 
         return mappings;
     }
+
+    /** The index over the mappings at the given path, which is only remade when the mappings are */
+    public NamespaceIndex getIndex(Path mappingsPath) throws IOException {
+        Mappings mappings = get(mappingsPath);
+        mappingsPath = mappingsPath.toAbsolutePath();
+
+        SoftReference<NamespaceIndex> ref = indexCache.get(mappingsPath);
+        NamespaceIndex index = ref != null ? ref.get() : null;
+
+        if (index == null || index.getMappings() != mappings) {
+            index = new NamespaceIndex(mappings);
+            indexCache.put(mappingsPath, new SoftReference<>(index));
+        }
+
+        return index;
+    }
+
+    /** Drop anything loaded from the given mappings, along with their binary copy, for when the file has been changed in place */
+    public void forget(Path mappingsPath) throws IOException {
+        mappingsPath = mappingsPath.toAbsolutePath();
+        mappingsCache.remove(mappingsPath);
+        indexCache.remove(mappingsPath);
+
+        Files.deleteIfExists(TinyBinary.binaryFor(mappingsPath));
+    }
 }
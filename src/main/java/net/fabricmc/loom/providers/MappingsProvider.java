@@ -27,13 +27,14 @@ package net.fabricmc.loom.providers;
 import net.fabricmc.loom.LoomGradleExtension;
 import net.fabricmc.loom.providers.mappings.EnigmaReader;
 import net.fabricmc.loom.providers.mappings.MappingBlob;
-import net.fabricmc.loom.providers.mappings.MappingBlob.InvertionTarget;
 import net.fabricmc.loom.providers.mappings.MappingBlob.Mapping;
 import net.fabricmc.loom.providers.mappings.MappingSplat;
 import net.fabricmc.loom.providers.mappings.MappingSplat.CombinedMapping;
 import net.fabricmc.loom.providers.mappings.MappingSplat.CombinedMapping.ArgOnlyMethod;
 import net.fabricmc.loom.providers.mappings.MappingSplat.CombinedMapping.CombinedField;
 import net.fabricmc.loom.providers.mappings.MappingSplat.CombinedMapping.CombinedMethod;
+import net.fabricmc.loom.providers.mappings.NamespaceIndex;
+import net.fabricmc.loom.providers.mappings.TinyBinary;
 import net.fabricmc.loom.providers.mappings.TinyReader;
 import net.fabricmc.loom.providers.mappings.TinyWriter;
 import net.fabricmc.loom.util.Constants;
@@ -100,6 +101,10 @@ public class MappingsProvider extends DependencyProvider {
 		return MappingsCache.INSTANCE.get(MAPPINGS_TINY.toPath());
 	}
 
+	public NamespaceIndex getMappingsIndex() throws IOException {
+		return MappingsCache.INSTANCE.getIndex(MAPPINGS_TINY.toPath());
+	}
+
 	@Override
 	public void provide(DependencyInfo dependency, Project project, LoomGradleExtension extension, Consumer<Runnable> postPopulationScheduler) throws Exception {
 		MinecraftProvider minecraftProvider = getDependencyManager().getProvider(MinecraftProvider.class);
@@ -135,8 +140,7 @@ public class MappingsProvider extends DependencyProvider {
 					TinyReader.readTiny(intermediaryNames.toPath(), tiny);
 
 					project.getLogger().lifecycle(":loading " + mappingsFile.getName());
-					MappingBlob enigma = new MappingBlob();
-					EnigmaReader.readEnigma(mappingsFile.toPath(), enigma);
+					MappingBlob enigma = EnigmaReader.readEnigmaParallel(mappingsFile.toPath());
 
 					if (Streams.stream(enigma.iterator()).parallel().anyMatch(mapping -> mapping.from.startsWith("net/minecraft/class_"))) {
 						assert Streams.stream(enigma.iterator()).parallel().filter(mapping -> mapping.to() != null).allMatch(mapping -> mapping.from.startsWith("net/minecraft/class_") || mapping.from.matches("com\\/mojang\\/.+\\$class_\\d+")):
@@ -146,11 +150,11 @@ public class MappingsProvider extends DependencyProvider {
 						assert Streams.stream(enigma.iterator()).map(Mapping::fields).flatMap(Streams::stream).parallel().filter(field -> field.name() != null).allMatch(field -> field.fromName.startsWith("field_")):
 							Streams.stream(enigma.iterator()).map(Mapping::fields).flatMap(Streams::stream).parallel().filter(field -> field.name() != null && !field.fromName.startsWith("field_")).map(field -> field.fromName).collect(Collectors.joining(", ", "Found unexpected field mappings: ", "]"));
 
-						enigma = enigma.rename(tiny.invert(InvertionTarget.MEMBERS));
+						enigma = enigma.rename(tiny.invertedView());
 					}
 
 					project.getLogger().lifecycle(":combining mappings");
-					MappingSplat combined = new MappingSplat(enigma, tiny);
+					MappingSplat combined = new MappingSplat(enigma, tiny, true);
 
 					project.getLogger().lifecycle(":writing " + MAPPINGS_TINY_BASE.getName());
 					try (TinyWriter writer = new TinyWriter(MAPPINGS_TINY_BASE.toPath())) {
@@ -212,30 +216,14 @@ public class MappingsProvider extends DependencyProvider {
 					MAPPINGS_TINY_BASE.getAbsolutePath(),
 					MAPPINGS_TINY.getAbsolutePath()
 			});
+
+			project.getLogger().lifecycle(":writing " + TinyBinary.binaryFor(MAPPINGS_TINY.toPath()).getFileName());
+			TinyBinary.create(MAPPINGS_TINY.toPath());
 		}
 
 		if (parameterNames.exists()) {
 			//Merge the tiny mappings with parameter names
-			Map<String, String[]> lines = new HashMap<>();
-
-			try (BufferedReader reader = new BufferedReader(new FileReader(parameterNames))) {
-				for (String line = reader.readLine(), current = null; line != null; line = reader.readLine()) {
-					if (current == null || line.charAt(0) != '\t') {
-						current = line;
-					} else {
-						int split = line.indexOf(':'); //\tno: name
-						int number = Integer.parseInt(line.substring(1, split));
-						String name = line.substring(split + 2);
-
-						String[] lineSet = lines.get(current);
-						if (lineSet == null) {
-							//The args are written backwards so the biggest index is first
-							lines.put(current, lineSet = new String[number + 1]);
-						}
-						lineSet[number] = name;
-					}
-				}
-			}
+			Map<String, String[]> lines = readParameterNames(parameterNames);
 
 			mcRemappingFactory = (fromM, toM) -> new IMappingProvider() {
 				private final IMappingProvider normal = TinyRemapperMappingsHelper.create(getMappings(), fromM, toM);
@@ -287,19 +275,56 @@ public class MappingsProvider extends DependencyProvider {
 		mappedProvider.provide(project, extension, minecraftProvider, this, postPopulationScheduler);
 	}
 
+	/** Read the parameter names for each method from the given file, by the owner, name and descriptor of the method */
+	public static Map<String, String[]> readParameterNames(File parameterNames) throws IOException {
+		Map<String, String[]> lines = new HashMap<>();
+
+		try (BufferedReader reader = new BufferedReader(new FileReader(parameterNames))) {
+			for (String line = reader.readLine(), current = null; line != null; line = reader.readLine()) {
+				if (current == null || line.charAt(0) != '\t') {
+					current = line;
+				} else {
+					int split = line.indexOf(':'); //\tno: name
+					int number = Integer.parseInt(line.substring(1, split));
+					String name = line.substring(split + 2);
+
+					String[] lineSet = lines.get(current);
+					if (lineSet == null) {
+						//The args are written backwards so the biggest index is first
+						lines.put(current, lineSet = new String[number + 1]);
+					}
+					lineSet[number] = name;
+				}
+			}
+		}
+
+		return lines;
+	}
+
 	public void initFiles(Project project) {
 		LoomGradleExtension extension = project.getExtensions().getByType(LoomGradleExtension.class);
 		MAPPINGS_DIR = new File(extension.getUserCache(), "mappings");
 
 		MAPPINGS_TINY_BASE = new File(MAPPINGS_DIR, mappingsName + "-tiny-" + minecraftVersion + "-" + mappingsVersion + "-base");
-		MAPPINGS_TINY = new File(MAPPINGS_DIR, mappingsName + "-tiny-" + minecraftVersion + "-" + mappingsVersion);
+		MAPPINGS_TINY = getMappingsTiny(mappingsVersion);
 		intermediaryNames = new File(MAPPINGS_DIR, mappingsName + "-intermediary-" + minecraftVersion + ".tiny");
-		parameterNames = new File(MAPPINGS_DIR, mappingsName + "-params-" + minecraftVersion + '-' + mappingsVersion);
+		parameterNames = getParameterNames(mappingsVersion);
 		MAPPINGS_MIXIN_EXPORT = new File(extension.getProjectBuildCache(), "mixin-map-" + minecraftVersion + "-" + mappingsVersion + ".tiny");
 	}
 
+	/** The tiny mappings for the given version of the current mappings, which will only exist if that version has been used before */
+	public File getMappingsTiny(String mappingsVersion) {
+		return new File(MAPPINGS_DIR, mappingsName + "-tiny-" + minecraftVersion + "-" + mappingsVersion);
+	}
+
+	/** The parameter names for the given version of the current mappings, which will only exist if that version came with any */
+	public File getParameterNames(String mappingsVersion) {
+		return new File(MAPPINGS_DIR, mappingsName + "-params-" + minecraftVersion + '-' + mappingsVersion);
+	}
+
 	public void clearFiles() {
 		MAPPINGS_TINY.delete();
+		TinyBinary.binaryFor(MAPPINGS_TINY.toPath()).toFile().delete();
 		MAPPINGS_TINY_BASE.delete();
 		intermediaryNames.delete();
 		parameterNames.delete();
@@ -37,14 +37,17 @@ import com.google.common.io.Files;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
+import java.util.Comparator;
 import java.util.Set;
 import java.util.function.Consumer;
 
 public class MinecraftMappedProvider {
     public File MINECRAFT_MAPPED_JAR;
     public File MINECRAFT_INTERMEDIARY_JAR;
+    /** The jars before any access transformations, which are the same as the jars above if there aren't any */
+    private File untransformedMappedJar, untransformedIntermediaryJar;
 
     private MinecraftProvider minecraftProvider;
 
@@ -59,13 +62,19 @@ public class MinecraftMappedProvider {
 
         this.minecraftProvider = minecraftProvider;
 
-        String atOffset; //Explicitly flag AT'd jars differently to vanilla/stock ones
-        File cache; //Save to the project cache when ATing to simplify flagging AT changes
+        String intermediaryJar = minecraftProvider.minecraftVersion + "-intermediary-" + mappingsProvider.mappingsName;
+        untransformedIntermediaryJar = new File(extension.getUserCache(), "minecraft-" + intermediaryJar + ".jar");
+        String mappedPrefix = "minecraft-" + minecraftProvider.minecraftVersion + "-mapped-" + mappingsProvider.mappingsName + '-';
+        String mappedJar = minecraftProvider.minecraftVersion + "-mapped-" + mappingsProvider.mappingsName + '-' + mappingsProvider.mappingsVersion;
+        untransformedMappedJar = new File(extension.getUserCache(), "minecraft-" + mappedJar + ".jar");
+
         Set<Pair<String, String>> targets;
-        boolean atChange = false;
+        File lastAT, lastIntermediaryAT;
         if (extension.hasAT()) {
-        	atOffset = "-transformed";
-        	cache = new File(extension.getRootProjectPersistentCache(), "access_transformed_jars");
+        	//Explicitly flag AT'd jars differently to vanilla/stock ones, saving them to the project cache to simplify flagging AT changes
+        	intermediaryJar = minecraftProvider.minecraftVersion + "-intermediary-transformed-" + mappingsProvider.mappingsName;
+        	mappedJar = minecraftProvider.minecraftVersion + "-mapped-transformed-" + mappingsProvider.mappingsName + '-' + mappingsProvider.mappingsVersion;
+        	File cache = new File(extension.getRootProjectPersistentCache(), "access_transformed_jars");
         	cache.mkdir();
 
         	//Add the transformed jars repo so that Gradle can find Minecraft
@@ -74,36 +83,62 @@ public class MinecraftMappedProvider {
 				repo.dir(cache);
 			});
 
+        	MINECRAFT_INTERMEDIARY_JAR = new File(cache, "minecraft-" + intermediaryJar + ".jar");
+        	MINECRAFT_MAPPED_JAR = new File(cache, "minecraft-" + mappedJar + ".jar");
+
         	project.getLogger().info("Negotiating access transformations...");
     		targets = AccessTransformerHelper.loadATs(extension.getAT());
     		project.getLogger().info("Access transformations solved for " + targets.size() + " targets");
 
-    		File lastAT = new File(cache, "last-seen.at");
-    		if (lastAT.exists() ? !AccessTransformerHelper.loadATs(lastAT).equals(targets) : !targets.isEmpty()) {
-    			Files.copy(extension.getAT(), lastAT); //Replace the old with the new
-    			atChange = true;
-    		}
+    		//The transformations each transformed jar was last made with, as the intermediary jar is shared between mappings versions
+    		lastAT = new File(cache, "minecraft-" + mappedJar + ".last-seen.at");
+    		lastIntermediaryAT = new File(cache, "minecraft-" + intermediaryJar + ".last-seen.at");
         } else {
-        	atOffset = "";
-        	cache = extension.getUserCache();
-        	targets = Collections.emptySet();
+        	MINECRAFT_INTERMEDIARY_JAR = untransformedIntermediaryJar;
+        	MINECRAFT_MAPPED_JAR = untransformedMappedJar;
+        	targets = null;
+        	lastAT = lastIntermediaryAT = null;
         }
 
-        String intermediaryJar = minecraftProvider.minecraftVersion + "-intermediary" + atOffset + '-' + mappingsProvider.mappingsName;
-        MINECRAFT_INTERMEDIARY_JAR = new File(cache, "minecraft-" + intermediaryJar + ".jar");
-        String mappedJar = minecraftProvider.minecraftVersion + "-mapped" + atOffset + '-' + mappingsProvider.mappingsName + '-' + mappingsProvider.mappingsVersion;
-        MINECRAFT_MAPPED_JAR = new File(cache, "minecraft-" + mappedJar + ".jar");
+        //Only the named jar changes between mappings versions, so if the intermediary jar is still there the last named jar can be built upon
+        if (!untransformedMappedJar.exists() && untransformedIntermediaryJar.exists() && !extension.hasOptiFine()) {
+            File previous = findPreviousMappedJar(extension.getUserCache(), mappedPrefix, mappingsProvider);
+
+            if (previous != null) {
+                String previousVersion = previous.getName().substring(mappedPrefix.length(), previous.getName().length() - ".jar".length());
+                if (!new MapJarsTiny().remapChanges(minecraftProvider, this, project, previous, previousVersion)) {
+                    project.getLogger().lifecycle(":unable to build upon " + previous.getName() + ", remapping in full");
+                }
+            }
+        }
 
-        if (!getMappedJar().exists() || !getIntermediaryJar().exists() || atChange) {
-            if (getMappedJar().exists()) {
-                getMappedJar().delete();
+        if (!untransformedMappedJar.exists() || !untransformedIntermediaryJar.exists()) {
+            if (untransformedMappedJar.exists()) {
+                untransformedMappedJar.delete();
             }
-            if (getIntermediaryJar().exists()) {
-                getIntermediaryJar().delete();
+            if (untransformedIntermediaryJar.exists()) {
+                untransformedIntermediaryJar.delete();
             }
             if (extension.hasOptiFine()) Openfine.applyBonusMappings(mappingsProvider.MAPPINGS_TINY);
-            new MapJarsTiny().mapJars(minecraftProvider, this, project);
-            if (!targets.isEmpty()) MapJarsTiny.transform(project, targets, this, mappingsProvider);
+            //The transformed jars are written along with the untransformed ones, rather than being transformed from them afterwards
+            new MapJarsTiny().mapJars(minecraftProvider, this, project, targets);
+            if (lastAT != null) {
+                Files.copy(extension.getAT(), lastAT);
+                Files.copy(extension.getAT(), lastIntermediaryAT);
+            }
+        }
+
+        if (lastAT != null) {
+    		//Each transformed jar can be built upon so long as its untransformed jar hasn't changed since it was made
+    		Set<Pair<String, String>> lastTargets = lastTargets(lastAT, MINECRAFT_MAPPED_JAR, untransformedMappedJar);
+    		Set<Pair<String, String>> lastIntermediaryTargets = lastTargets(lastIntermediaryAT, MINECRAFT_INTERMEDIARY_JAR, untransformedIntermediaryJar);
+
+    		if (!targets.equals(lastTargets) || !targets.equals(lastIntermediaryTargets)) {
+    			MapJarsTiny.transform(project, lastTargets, lastIntermediaryTargets, targets, this, mappingsProvider);
+    			//Only replace the old with the new once the jars have been updated to match
+    			Files.copy(extension.getAT(), lastAT);
+    			Files.copy(extension.getAT(), lastIntermediaryAT);
+    		}
         }
 
         if (!MINECRAFT_MAPPED_JAR.exists()) {
@@ -114,6 +149,22 @@ public class MinecraftMappedProvider {
         project.getDependencies().add(Constants.MINECRAFT_INTERMEDIARY, project.getDependencies().module("net.minecraft:minecraft:" + intermediaryJar));
     }
 
+    /** The transformations the given transformed jar was last made with, or {@code null} if it needs making again in full */
+    private static Set<Pair<String, String>> lastTargets(File lastAT, File transformedJar, File untransformedJar) throws IOException {
+        return lastAT.exists() && transformedJar.exists() && transformedJar.lastModified() >= untransformedJar.lastModified() ? AccessTransformerHelper.loadATs(lastAT) : null;
+    }
+
+    /** Find the most recently made named jar for another version of the current mappings, so long as the mappings for it are still around */
+    private static File findPreviousMappedJar(File cache, String prefix, MappingsProvider mappingsProvider) {
+        File[] candidates = cache.listFiles((dir, name) -> name.startsWith(prefix) && name.endsWith(".jar"));
+        if (candidates == null) return null;
+
+        return Arrays.stream(candidates).filter(jar -> {
+            String version = jar.getName().substring(prefix.length(), jar.getName().length() - ".jar".length());
+            return !version.equals(mappingsProvider.mappingsVersion) && mappingsProvider.getMappingsTiny(version).exists();
+        }).max(Comparator.comparingLong(File::lastModified)).orElse(null);
+    }
+
     public Collection<File> getMapperPaths() {
         return minecraftProvider.libraryProvider.getLibraries();
     }
@@ -125,4 +176,12 @@ public class MinecraftMappedProvider {
     public File getMappedJar() {
         return MINECRAFT_MAPPED_JAR;
     }
+
+    public File getUntransformedIntermediaryJar() {
+        return untransformedIntermediaryJar;
+    }
+
+    public File getUntransformedMappedJar() {
+        return untransformedMappedJar;
+    }
 }
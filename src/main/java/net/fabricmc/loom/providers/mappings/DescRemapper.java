@@ -0,0 +1,95 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2019 Chocohead
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.fabricmc.loom.providers.mappings;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.UnaryOperator;
+
+/**
+ * Remaps the class names in descriptors for a single direction of mapping, remembering the most recent results
+ * as the same descriptors turn up over and over again across Minecraft's classes.
+ *
+ * <p>Not thread safe, each thread remapping in parallel should have their own.
+ */
+public final class DescRemapper {
+	private static final int DEFAULT_CACHE_SIZE = 1 << 14;
+	private final UnaryOperator<String> classRemapper;
+	private final Map<String, String> cache;
+	private final StringBuilder builder = new StringBuilder(64);
+
+	public DescRemapper(UnaryOperator<String> classRemapper) {
+		this(classRemapper, DEFAULT_CACHE_SIZE);
+	}
+
+	public DescRemapper(UnaryOperator<String> classRemapper, int cacheSize) {
+		this.classRemapper = classRemapper;
+		cache = new LinkedHashMap<String, String>(Math.min(cacheSize, 1 << 10), 0.75F, true) {
+			private static final long serialVersionUID = 6427405813466434950L;
+
+			@Override
+			protected boolean removeEldestEntry(Entry<String, String> eldest) {
+				return size() > cacheSize;
+			}
+		};
+	}
+
+	public String remap(String desc) {
+		String remapped = cache.get(desc);
+
+		if (remapped == null) {
+			remapped = remap(desc, classRemapper, builder);
+			cache.put(desc, remapped);
+		}
+
+		return remapped;
+	}
+
+	/** Remap the given descriptor in a single pass through the given builder, returning the same string if none of the classes in it change */
+	static String remap(String desc, UnaryOperator<String> classRemapper, StringBuilder builder) {
+		int start = desc.indexOf('L');
+		if (start < 0) return desc; //Only primitives, nothing to remap
+
+		builder.setLength(0);
+		boolean changed = false;
+
+		int last = 0;
+		for (int end; start >= 0; start = desc.indexOf('L', end + 1)) {
+			end = desc.indexOf(';', start + 1);
+			if (end < 0) break; //No class name actually follows
+			if (end == start + 1) continue; //Empty class name
+
+			String name = desc.substring(start + 1, end);
+			String mapped = classRemapper.apply(name);
+
+			builder.append(desc, last, start + 1).append(mapped);
+			last = end;
+			changed |= !name.equals(mapped);
+		}
+
+		if (!changed) return desc;
+		return builder.append(desc, last, desc.length()).toString();
+	}
+}
@@ -23,157 +23,239 @@
  */
 package net.fabricmc.loom.providers.mappings;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.nio.file.FileSystem;
 import java.nio.file.FileSystems;
 import java.nio.file.FileVisitOption;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import com.google.common.io.ByteStreams;
+
+import net.fabricmc.stitch.util.Pair;
 
 public class EnigmaReader {
 	static final boolean LEGACY = true;
 
 	public static void readEnigma(Path dir, IMappingAcceptor mappingAcceptor) throws IOException {
-		try (Stream<Path> stream = Files.find(FileSystems.newFileSystem(dir, null).getPath("/"),
+		try (FileSystem fs = FileSystems.newFileSystem(dir, null); Stream<Path> stream = Files.find(fs.getPath("/"),
 				Integer.MAX_VALUE,
 				(path, attr) -> attr.isRegularFile() && path.getFileName().toString().endsWith(".mapping"),
 				FileVisitOption.FOLLOW_LINKS)) {
-			stream.forEach(file -> readEnigmaFile(file, mappingAcceptor));
+			StringPool pool = StringPool.forAcceptor(mappingAcceptor);
+
+			stream.forEach(file -> {
+				try {
+					readEnigmaFile(LineTokenizer.read(file, ' ', pool), mappingAcceptor);
+				} catch (IOException e) {
+					throw new UncheckedIOException(new IOException("Error reading " + file + " in " + dir, e));
+				}
+			});
 		} catch (UncheckedIOException e) {
 			throw e.getCause();
 		}
 	}
 
-	private static void readEnigmaFile(Path file, IMappingAcceptor mappingAcceptor) {
-		try (BufferedReader reader = Files.newBufferedReader(file)) {
-			String line;
-			Queue<String> contextStack = Collections.asLifoQueue(new ArrayDeque<>());
-			Queue<String> contextNamedStack = Collections.asLifoQueue(new ArrayDeque<>());
-			int indent = 0;
+	/**
+	 * Read all the mapping files in the given enigma zip, parsing them in parallel
+	 *
+	 * <p>The zip is only streamed through once, with the files split into chunks for the common {@link ForkJoinPool}'s
+	 * workers to each read into their own {@link MappingBlob}, which are merged into the first as they finish
+	 */
+	public static MappingBlob readEnigmaParallel(Path zip) throws IOException {
+		List<Pair<String, byte[]>> files = new ArrayList<>();
 
-			while ((line = reader.readLine()) != null) {
-				if (line.isEmpty()) continue;
+		try (ZipInputStream in = new ZipInputStream(new BufferedInputStream(Files.newInputStream(zip)))) {
+			for (ZipEntry entry = in.getNextEntry(); entry != null; entry = in.getNextEntry()) {
+				if (!entry.isDirectory() && entry.getName().endsWith(".mapping")) {
+					files.add(Pair.of(entry.getName(), ByteStreams.toByteArray(in)));
+				}
+			}
+		}
 
-				int newIndent = 0;
-				while (newIndent < line.length() && line.charAt(newIndent) == '\t') newIndent++;
-				int indentChange = newIndent - indent;
+		List<ForkJoinTask<MappingBlob>> reads = new ArrayList<>();
+		for (int from = 0; from < files.size(); from += PartialRead.CHUNK) {
+			reads.add(ForkJoinPool.commonPool().submit(new PartialRead(zip, files, from, Math.min(from + PartialRead.CHUNK, files.size()))));
+		}
+		if (reads.isEmpty()) return new MappingBlob();
 
-				if (indentChange != 0) {
-					if (indentChange < 0) {
-						for (int i = 0; i < -indentChange; i++) {
-							contextStack.remove();
-							contextNamedStack.remove();
-						}
+		//Merging each partial only once keeps every string going through the final pool a single time
+		MappingBlob mappings = join(reads.get(0));
+		for (int i = 1; i < reads.size(); i++) {
+			mappings.merge(join(reads.get(i)));
+		}
 
-						indent = newIndent;
-					} else {
-						throw new IOException("invalid enigma line (invalid indentation change): "+line);
-					}
+		return mappings;
+	}
+
+	private static class PartialRead implements Callable<MappingBlob> {
+		/** The number of files each worker reads at once, large enough that the merging doesn't overtake the reading */
+		static final int CHUNK = 32;
+		private final Path zip;
+		private final List<Pair<String, byte[]>> files;
+		private final int from, to;
+
+		PartialRead(Path zip, List<Pair<String, byte[]>> files, int from, int to) {
+			this.zip = zip;
+			this.files = files;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public MappingBlob call() throws IOException {
+			MappingBlob partial = new MappingBlob();
+
+			for (int i = from; i < to; i++) {
+				Pair<String, byte[]> file = files.get(i);
+
+				try {
+					readEnigmaFile(LineTokenizer.read(file.getRight(), ' ', partial.pool), partial);
+				} catch (IOException e) {
+					throw new IOException("Error reading " + file.getLeft() + " in " + zip, e);
 				}
+			}
+
+			return partial;
+		}
+	}
+
+	private static MappingBlob join(ForkJoinTask<MappingBlob> read) throws IOException {
+		try {
+			return read.join();
+		} catch (RuntimeException e) {
+			//The pool wraps whatever the read threw, and can wrap it again when rethrowing it on another thread
+			for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+				if (cause instanceof IOException) throw (IOException) cause;
+			}
+
+			throw e;
+		}
+	}
 
-				line = line.substring(indent);
-				String[] parts = line.split(" ");
-
-				switch (parts[0]) {
-				case "CLASS":
-					if (parts.length < 2 || parts.length > 3) throw new IOException("invalid enigma line (missing/extra columns): "+line);
-					String obfName = parts[1];
-					if (indent >= 1) {//Inner classes have certain inconsistencies...
-						if (obfName.indexOf('/') > 0) {//Some inner classes carry the named outer class, others the obf'd outer class
-							int split = obfName.lastIndexOf('$');
-							assert split > 2; //Should be at least a/b$c
-							String context = contextStack.peek();
-							if (context == null || context.charAt(0) != 'C') throw new IOException("Invalid enigma line (named inner class without outer class name): " + line);
-							obfName = context.substring(1) + '$' + obfName.substring(split + 1);
-						} else if (obfName.indexOf('$') < 1) {//Some inner classes don't carry any outer name at all
-							assert obfName.indexOf('$') == -1 && obfName.indexOf('/') == -1;
-							String context = contextStack.peek();
-							if (context == null || context.charAt(0) != 'C') throw new IOException("Invalid enigma line (named inner class without outer class name): " + line);
-							obfName = context.substring(1) + '$' + obfName;
-						}
+	private static void readEnigmaFile(LineTokenizer line, IMappingAcceptor mappingAcceptor) throws IOException {
+		Queue<String> contextStack = Collections.asLifoQueue(new ArrayDeque<>());
+		Queue<String> contextNamedStack = Collections.asLifoQueue(new ArrayDeque<>());
+		int indent = 0;
+
+		while (line.next()) {
+			if (line.isEmpty()) continue;
+
+			int newIndent = line.indent();
+			int indentChange = newIndent - indent;
+
+			if (indentChange != 0) {
+				if (indentChange < 0) {
+					for (int i = 0; i < -indentChange; i++) {
+						contextStack.remove();
+						contextNamedStack.remove();
 					}
-					contextStack.add('C' + obfName);
-					indent++;
-					if (parts.length == 3) {
-						String className;
-						if (indent > 1) {//If we're an indent in, we're an inner class so want the outer classes's name
-							String context = contextNamedStack.peek();
-							if (context == null || context.charAt(0) != 'C') throw new IOException("Invalid enigma line (named inner class without outer class name): " + line);
-							//Named inner classes shouldn't ever carry the outer class's package + name
-							assert !parts[2].startsWith(context.substring(1)): "Pre-prefixed enigma class name: " + parts[2];
-							className = context.substring(1) + '$' + parts[2];
-						} else {
-							className = parts[2];
-						}
-						contextNamedStack.add('C' + className);
-						mappingAcceptor.acceptClass(obfName, className);
-					} else {
-						contextNamedStack.add('C' + obfName); //No name, but we still need something to avoid underflowing
+
+					indent = newIndent;
+				} else {
+					throw new IOException("invalid enigma line (invalid indentation change): "+line);
+				}
+			}
+
+			int parts = line.columns();
+			if (parts == 0) throw new IOException("invalid enigma line (unknown type): "+line);
+
+			if (line.equals(0, "CLASS")) {
+				if (parts < 2 || parts > 3) throw new IOException("invalid enigma line (missing/extra columns): "+line);
+				String obfName = line.column(1);
+				if (indent >= 1) {//Inner classes have certain inconsistencies...
+					if (obfName.indexOf('/') > 0) {//Some inner classes carry the named outer class, others the obf'd outer class
+						int split = obfName.lastIndexOf('$');
+						assert split > 2; //Should be at least a/b$c
+						String context = contextStack.peek();
+						if (context == null || context.charAt(0) != 'C') throw new IOException("Invalid enigma line (named inner class without outer class name): " + line);
+						obfName = context.substring(1) + '$' + obfName.substring(split + 1);
+					} else if (obfName.indexOf('$') < 1) {//Some inner classes don't carry any outer name at all
+						assert obfName.indexOf('$') == -1 && obfName.indexOf('/') == -1;
+						String context = contextStack.peek();
+						if (context == null || context.charAt(0) != 'C') throw new IOException("Invalid enigma line (named inner class without outer class name): " + line);
+						obfName = context.substring(1) + '$' + obfName;
 					}
-					break;
-				case "METHOD": {
-					if (parts.length < 3 || parts.length > 4) throw new IOException("invalid enigma line (missing/extra columns): "+line);
-					if (!parts[parts.length - 1].startsWith("(")) throw new IOException("invalid enigma line (invalid method desc): "+line);
-					String context = contextStack.peek();
-					if (context == null || context.charAt(0) != 'C') throw new IOException("invalid enigma line (method without class): "+line);
-					contextStack.add("M"+parts[1]+parts[parts.length - 1]);
-					indent++;
-					if (parts.length == 4) {
-						mappingAcceptor.acceptMethod(context.substring(1), parts[1], parts[3], contextNamedStack.peek().substring(1), parts[2], null);
-						contextNamedStack.add('M' + parts[2]);
+				}
+				contextStack.add('C' + obfName);
+				indent++;
+				if (parts == 3) {
+					String className;
+					if (indent > 1) {//If we're an indent in, we're an inner class so want the outer classes's name
+						String context = contextNamedStack.peek();
+						if (context == null || context.charAt(0) != 'C') throw new IOException("Invalid enigma line (named inner class without outer class name): " + line);
+						//Named inner classes shouldn't ever carry the outer class's package + name
+						assert !line.column(2).startsWith(context.substring(1)): "Pre-prefixed enigma class name: " + line.column(2);
+						className = context.substring(1) + '$' + line.column(2);
 					} else {
-						contextNamedStack.add('M' + parts[1]); //No name, but we still need something to avoid underflowing
+						className = line.column(2);
 					}
-					break;
+					contextNamedStack.add('C' + className);
+					mappingAcceptor.acceptClass(obfName, className);
+				} else {
+					contextNamedStack.add('C' + obfName); //No name, but we still need something to avoid underflowing
 				}
-				case "ARG":
-				case "VAR": {
-					if (parts.length != 3) throw new IOException("invalid enigma line (missing/extra columns): "+line);
-					String methodContext = contextStack.poll();
-					if (methodContext == null || methodContext.charAt(0) != 'M') throw new IOException("invalid enigma line (arg without method): "+line);
-					String classContext = contextStack.peek();
-					if (classContext == null || classContext.charAt(0) != 'C') throw new IllegalStateException();
-					contextStack.add(methodContext);
-					int methodDescStart = methodContext.indexOf('(');
-					assert methodDescStart != -1;
-
-					String srcClsName = classContext.substring(1);
-					String srcMethodName = methodContext.substring(1, methodDescStart);
-					String srcMethodDesc = methodContext.substring(methodDescStart);
-					int index = Integer.parseInt(parts[1]);
-					int lvIndex = -1;
-					String name = parts[2];
-
-					if (LEGACY) {
-						lvIndex = index;
-						index = -1;
-					}
+			} else if (line.equals(0, "METHOD")) {
+				if (parts < 3 || parts > 4) throw new IOException("invalid enigma line (missing/extra columns): "+line);
+				if (!line.startsWith(parts - 1, "(")) throw new IOException("invalid enigma line (invalid method desc): "+line);
+				String context = contextStack.peek();
+				if (context == null || context.charAt(0) != 'C') throw new IOException("invalid enigma line (method without class): "+line);
+				contextStack.add("M"+line.columnCopy(1)+line.columnCopy(parts - 1));
+				indent++;
+				if (parts == 4) {
+					mappingAcceptor.acceptMethod(context.substring(1), line.column(1), line.column(3), contextNamedStack.peek().substring(1), line.column(2), null);
+					contextNamedStack.add('M' + line.columnCopy(2));
+				} else {
+					contextNamedStack.add('M' + line.columnCopy(1)); //No name, but we still need something to avoid underflowing
+				}
+			} else if (line.equals(0, "ARG") || line.equals(0, "VAR")) {
+				if (parts != 3) throw new IOException("invalid enigma line (missing/extra columns): "+line);
+				String methodContext = contextStack.poll();
+				if (methodContext == null || methodContext.charAt(0) != 'M') throw new IOException("invalid enigma line (arg without method): "+line);
+				String classContext = contextStack.peek();
+				if (classContext == null || classContext.charAt(0) != 'C') throw new IllegalStateException();
+				contextStack.add(methodContext);
+				int methodDescStart = methodContext.indexOf('(');
+				assert methodDescStart != -1;
 
-					if (parts[0].equals("ARG")) {
-						mappingAcceptor.acceptMethodArg(srcClsName, srcMethodName, srcMethodDesc, index, lvIndex, name);
-					} else {
-						mappingAcceptor.acceptMethodVar(srcClsName, srcMethodName, srcMethodDesc, index, lvIndex, name);
-					}
+				String srcClsName = classContext.substring(1);
+				String srcMethodName = methodContext.substring(1, methodDescStart);
+				String srcMethodDesc = methodContext.substring(methodDescStart);
+				int index = line.columnInt(1);
+				int lvIndex = -1;
+				String name = line.column(2);
 
-					break;
+				if (LEGACY) {
+					lvIndex = index;
+					index = -1;
 				}
-				case "FIELD":
-					if (parts.length != 4) throw new IOException("invalid enigma line (missing/extra columns): "+line);
-					String context = contextStack.peek();
-					if (context == null || context.charAt(0) != 'C') throw new IOException("invalid enigma line (field without class): "+line);
-					mappingAcceptor.acceptField(context.substring(1), parts[1], parts[3], contextNamedStack.peek().substring(1), parts[2], null);
-					break;
-				default:
-					throw new IOException("invalid enigma line (unknown type): "+line);
+
+				if (line.equals(0, "ARG")) {
+					mappingAcceptor.acceptMethodArg(srcClsName, srcMethodName, srcMethodDesc, index, lvIndex, name);
+				} else {
+					mappingAcceptor.acceptMethodVar(srcClsName, srcMethodName, srcMethodDesc, index, lvIndex, name);
 				}
+			} else if (line.equals(0, "FIELD")) {
+				if (parts != 4) throw new IOException("invalid enigma line (missing/extra columns): "+line);
+				String context = contextStack.peek();
+				if (context == null || context.charAt(0) != 'C') throw new IOException("invalid enigma line (field without class): "+line);
+				mappingAcceptor.acceptField(context.substring(1), line.column(1), line.column(3), contextNamedStack.peek().substring(1), line.column(2), null);
+			} else {
+				throw new IOException("invalid enigma line (unknown type): "+line);
 			}
-		} catch (IOException e) {
-			throw new UncheckedIOException(e);
 		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,98 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2019 Chocohead
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.fabricmc.loom.providers.mappings;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import net.fabricmc.loom.providers.mappings.MappingBlob.Mapping;
+import net.fabricmc.loom.providers.mappings.MappingBlob.Mapping.Field;
+import net.fabricmc.loom.providers.mappings.MappingBlob.Mapping.Method;
+
+/**
+ * A view of a {@link MappingBlob} inverted as {@link MappingBlob#invert(MappingBlob.InvertionTarget...)} would for its classes and members,
+ * without copying it. Only the mapped class names are indexed up front, the members of a class are indexed the first time they are
+ * looked up and only kept until a different class is.
+ */
+final class InvertedMappings implements MappingView {
+	private final Map<String, Mapping> classes = new HashMap<>();
+	private final DescRemapper descRemapper;
+	private Mapping lastClass;
+	private MemberIndex<Field> lastFields, lastMethods;
+
+	InvertedMappings(MappingBlob blob) {
+		for (Mapping mapping : blob) {
+			//If there is no mapped class name there is nothing for it to invert to
+			if (mapping.to != null) classes.put(mapping.to, mapping);
+		}
+
+		descRemapper = new DescRemapper(name -> {
+			String mapping = blob.tryMapName(name);
+			return mapping != null ? mapping : name;
+		});
+	}
+
+	@Override
+	public String tryMapName(String srcName) {
+		Mapping mapping = classes.get(srcName);
+		return mapping != null ? mapping.from : null;
+	}
+
+	@Override
+	public Field tryMapField(String srcClsName, String srcName, String srcDesc) {
+		return index(srcClsName) ? lastFields.get(srcName, srcDesc) : null;
+	}
+
+	@Override
+	public Field tryMapMethod(String srcClsName, String srcName, String srcDesc) {
+		return index(srcClsName) ? lastMethods.get(srcName, srcDesc) : null;
+	}
+
+	private boolean index(String srcClsName) {
+		Mapping mapping = classes.get(srcClsName);
+		if (mapping == null) return false;
+
+		if (mapping != lastClass) {
+			lastFields = new MemberIndex<>(field -> field.fromName, field -> field.fromDesc);
+			for (Field field : mapping.fields()) {
+				if (field.name() != null) lastFields.put(invert(field));
+			}
+
+			lastMethods = new MemberIndex<>(method -> method.fromName, method -> method.fromDesc);
+			for (Method method : mapping.methods()) {
+				if (method.name() != null) lastMethods.put(invert(method));
+			}
+
+			lastClass = mapping;
+		}
+
+		return true;
+	}
+
+	private Field invert(Field member) {
+		Field inverted = new Field(member.name(), member.desc() != null ? member.desc() : descRemapper.remap(member.fromDesc));
+		inverted.setMapping(member.fromName, member.fromDesc);
+		return inverted;
+	}
+}
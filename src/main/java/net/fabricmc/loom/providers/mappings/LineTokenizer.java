@@ -0,0 +1,201 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2019 Chocohead
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.fabricmc.loom.providers.mappings;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Splits a buffer of text into lines, then those lines into columns, without making any new strings unless asked to.
+ *
+ * <p>Leading tabs are counted as the line's {@link #indent()} rather than columns when the separator isn't a tab,
+ * and trailing empty columns are dropped as {@link String#split(String)} would.
+ */
+final class LineTokenizer {
+	private final char[] chars;
+	private final int length;
+	private final char separator;
+	private final StringPool pool;
+	private int lineStart, lineEnd, next;
+	private int indent;
+	private int columns;
+	private int[] starts = new int[8], ends = new int[8];
+
+	public static LineTokenizer read(Path file, char separator, StringPool pool) throws IOException {
+		CharBuffer buffer;
+
+		if (file.getFileSystem() == FileSystems.getDefault()) {
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+				buffer = StandardCharsets.UTF_8.decode(channel.map(MapMode.READ_ONLY, 0, channel.size()));
+			}
+		} else {
+			buffer = StandardCharsets.UTF_8.decode(ByteBuffer.wrap(Files.readAllBytes(file)));
+		}
+
+		return new LineTokenizer(buffer, separator, pool);
+	}
+
+	public static LineTokenizer read(byte[] contents, char separator, StringPool pool) {
+		return new LineTokenizer(StandardCharsets.UTF_8.decode(ByteBuffer.wrap(contents)), separator, pool);
+	}
+
+	LineTokenizer(CharBuffer buffer, char separator, StringPool pool) {
+		if (buffer.hasArray()) {
+			chars = buffer.array();
+			next = buffer.arrayOffset() + buffer.position();
+			length = buffer.arrayOffset() + buffer.limit();
+		} else {
+			chars = new char[buffer.remaining()];
+			buffer.get(chars);
+			length = chars.length;
+		}
+
+		this.separator = separator;
+		this.pool = pool;
+	}
+
+	/** Move on to the next line, returning {@code false} if there aren't any more */
+	public boolean next() {
+		if (next >= length) return false;
+
+		lineStart = next;
+		int end = lineStart;
+		while (end < length && chars[end] != '\n') end++;
+		next = end + 1;
+		if (end > lineStart && chars[end - 1] == '\r') end--;
+		lineEnd = end;
+
+		int start = lineStart;
+		if (separator != '\t') {
+			while (start < lineEnd && chars[start] == '\t') start++;
+		}
+		indent = start - lineStart;
+
+		columns = 0;
+		for (int i = start;; i++) {
+			if (i == lineEnd || chars[i] == separator) {
+				if (columns == starts.length) {
+					starts = Arrays.copyOf(starts, columns << 1);
+					ends = Arrays.copyOf(ends, columns << 1);
+				}
+
+				starts[columns] = start;
+				ends[columns++] = i;
+				start = i + 1;
+
+				if (i == lineEnd) break;
+			}
+		}
+		while (columns > 0 && starts[columns - 1] == ends[columns - 1]) columns--;
+
+		return true;
+	}
+
+	/** Whether the line is completely empty, including of any indentation */
+	public boolean isEmpty() {
+		return lineStart == lineEnd;
+	}
+
+	public boolean startsWith(String prefix) {
+		return startsWith(lineStart, lineEnd, prefix);
+	}
+
+	public int indent() {
+		return indent;
+	}
+
+	public int columns() {
+		return columns;
+	}
+
+	public boolean isEmpty(int column) {
+		return column >= columns || starts[column] == ends[column];
+	}
+
+	public boolean startsWith(int column, String prefix) {
+		return column < columns && startsWith(starts[column], ends[column], prefix);
+	}
+
+	/** Whether the given column is exactly the given value, without making a string of the column to compare */
+	public boolean equals(int column, String value) {
+		return column < columns && ends[column] - starts[column] == value.length() && startsWith(starts[column], ends[column], value);
+	}
+
+	private boolean startsWith(int start, int end, String prefix) {
+		if (end - start < prefix.length()) return false;
+
+		for (int i = 0; i < prefix.length(); i++) {
+			if (chars[start + i] != prefix.charAt(i)) return false;
+		}
+
+		return true;
+	}
+
+	/** The pooled string for the given column, only made the first time the pool sees the value */
+	public String column(int column) {
+		if (column >= columns) throw new ArrayIndexOutOfBoundsException(column);
+		return pool.intern(chars, starts[column], ends[column]);
+	}
+
+	/** A new string for the given column which skips the pool, for anything which won't be kept so isn't worth pooling */
+	public String columnCopy(int column) {
+		if (column >= columns) throw new ArrayIndexOutOfBoundsException(column);
+		return new String(chars, starts[column], ends[column] - starts[column]);
+	}
+
+	public int columnInt(int column) {
+		if (column >= columns) throw new ArrayIndexOutOfBoundsException(column);
+		int start = starts[column], end = ends[column];
+
+		boolean negative = start < end && chars[start] == '-';
+		if (negative || start < end && chars[start] == '+') start++;
+		if (start == end) throw new NumberFormatException("For input string: \"" + new String(chars, starts[column], ends[column] - starts[column]) + '"');
+
+		int value = 0;
+		for (int i = start; i < end; i++) {
+			int digit = chars[i] - '0';
+			if (digit < 0 || digit > 9 || value > (Integer.MAX_VALUE - digit) / 10) {
+				throw new NumberFormatException("For input string: \"" + new String(chars, starts[column], ends[column] - starts[column]) + '"');
+			}
+			value = value * 10 + digit;
+		}
+
+		return negative ? -value : value;
+	}
+
+	/** The current line without its indentation, only for error messages as a new string is made each time */
+	@Override
+	public String toString() {
+		return new String(chars, lineStart + indent, lineEnd - lineStart - indent);
+	}
+}
@@ -30,7 +30,6 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.function.UnaryOperator;
 
 import com.google.common.collect.Streams;
 
@@ -38,7 +37,7 @@ import net.fabricmc.loom.providers.mappings.MappingBlob.Mapping;
 import net.fabricmc.loom.providers.mappings.MappingBlob.Mapping.Field;
 import net.fabricmc.loom.providers.mappings.MappingBlob.Mapping.Method;
 
-public class MappingBlob implements IMappingAcceptor, Iterable<Mapping> {
+public class MappingBlob implements IMappingAcceptor, MappingView, Iterable<Mapping> {
 	public static class Mapping {
 		public static class Method extends Field {
 			private String[] args = new String[0];
@@ -81,6 +80,12 @@ public class MappingBlob implements IMappingAcceptor, Iterable<Mapping> {
 				return args.length > index ? args[index] : null;
 			}
 
+			void mergeArgs(String[] args) {
+				for (int i = 0; i < args.length; i++) {
+					if (args[i] != null) addArg(args[i], i);
+				}
+			}
+
 			public Iterable<String> namedArgs() {
 				return () -> new Iterator<String>() {
 					private int head = args.length - 1;
@@ -126,11 +131,13 @@ public class MappingBlob implements IMappingAcceptor, Iterable<Mapping> {
 
 		public final String from;
 		String to;
-		final Map<String, Method> methods = new HashMap<>();
-		final Map<String, Field> fields = new HashMap<>();
+		final MemberIndex<Method> methods = new MemberIndex<>(method -> method.fromName, method -> method.fromDesc);
+		final MemberIndex<Field> fields = new MemberIndex<>(field -> field.fromName, field -> field.fromDesc);
+		private final StringPool pool;
 
-		public Mapping(String from) {
+		Mapping(String from, StringPool pool) {
 			this.from = from;
+			this.pool = pool;
 		}
 
 		public String to() {
@@ -142,11 +149,11 @@ public class MappingBlob implements IMappingAcceptor, Iterable<Mapping> {
 		}
 
 		public Iterable<Method> methods() {
-			return methods.values();
+			return methods;
 		}
 
 		public boolean hasMethod(Method other) {
-			return methods.containsKey(other.fromName + other.fromDesc);
+			return methods.contains(other.fromName, other.fromDesc);
 		}
 
 		public Method method(Method other) {
@@ -154,15 +161,17 @@ public class MappingBlob implements IMappingAcceptor, Iterable<Mapping> {
 		}
 
 		Method method(String srcName, String srcDesc) {
-			return methods.computeIfAbsent(srcName + srcDesc, k -> new Method(srcName, srcDesc));
+			Method method = methods.get(srcName, srcDesc);
+			if (method == null) methods.put(method = new Method(pool.intern(srcName), pool.intern(srcDesc)));
+			return method;
 		}
 
 		public Iterable<Field> fields() {
-			return fields.values();
+			return fields;
 		}
 
 		public boolean hasField(Field other) {
-			return fields.containsKey(other.fromName + ";;" + other.fromDesc);
+			return fields.contains(other.fromName, other.fromDesc);
 		}
 
 		public Field field(Field other) {
@@ -170,44 +179,82 @@ public class MappingBlob implements IMappingAcceptor, Iterable<Mapping> {
 		}
 
 		Field field(String srcName, String srcDesc) {
-			return fields.computeIfAbsent(srcName + ";;" + srcDesc, k -> new Field(srcName, srcDesc));
+			Field field = fields.get(srcName, srcDesc);
+			if (field == null) fields.put(field = new Field(pool.intern(srcName), pool.intern(srcDesc)));
+			return field;
 		}
 	}
 
 	private final Map<String, Mapping> mappings = new HashMap<>();
+	/** Every name and descriptor in the blob, shared with any blobs {@link #invert(InvertionTarget...) inverted} or {@link #rename(MappingBlob) renamed} from it */
+	final StringPool pool;
+
+	public MappingBlob() {
+		this(new StringPool());
+	}
+
+	MappingBlob(StringPool pool) {
+		this.pool = pool;
+	}
 
 	public Mapping get(String srcName) {
-		return mappings.computeIfAbsent(srcName, Mapping::new);
+		Mapping mapping = mappings.get(srcName);
+
+		if (mapping == null) {
+			srcName = pool.intern(srcName);
+			mappings.put(srcName, mapping = new Mapping(srcName, pool));
+		}
+
+		return mapping;
 	}
 
+	@Override
 	public String tryMapName(String srcName) {
 		Mapping mapping = mappings.get(srcName);
 		return mapping != null ? mapping.to : null;
 	}
 
+	@Override
+	public Field tryMapField(String srcClsName, String srcName, String srcDesc) {
+		Mapping mapping = mappings.get(srcClsName);
+		if (mapping == null) return null;
+
+		Field field = mapping.fields.get(srcName, srcDesc);
+		return field != null && field.name() != null ? field : null;
+	}
+
+	@Override
+	public Field tryMapMethod(String srcClsName, String srcName, String srcDesc) {
+		Mapping mapping = mappings.get(srcClsName);
+		if (mapping == null) return null;
+
+		Method method = mapping.methods.get(srcName, srcDesc);
+		return method != null && method.name() != null ? method : null;
+	}
+
 	@Override
 	public void acceptClass(String srcName, String dstName) {
-		get(srcName).to = dstName;
+		get(srcName).to = pool.intern(dstName);
 	}
 
 	@Override
 	public void acceptMethod(String srcClsName, String srcName, String srcDesc, String dstClsName, String dstName, String dstDesc) {
-		get(srcClsName).method(srcName, srcDesc).setMapping(dstName, dstDesc);
+		get(srcClsName).method(srcName, srcDesc).setMapping(pool.intern(dstName), pool.intern(dstDesc));
 	}
 
 	@Override
 	public void acceptMethodArg(String srcClsName, String srcMethodName, String srcMethodDesc, int argIndex, int lvIndex, String dstArgName) {
-		get(srcClsName).method(srcMethodName, srcMethodDesc).addArg(dstArgName, lvIndex);
+		get(srcClsName).method(srcMethodName, srcMethodDesc).addArg(pool.intern(dstArgName), lvIndex);
 	}
 
 	@Override
 	public void acceptMethodVar(String srcClsName, String srcMethodName, String srcMethodDesc, int varIndex, int lvIndex, String dstVarName) {
-		get(srcClsName).method(srcMethodName, srcMethodDesc).addArg(dstVarName, lvIndex);
+		get(srcClsName).method(srcMethodName, srcMethodDesc).addArg(pool.intern(dstVarName), lvIndex);
 	}
 
 	@Override
 	public void acceptField(String srcClsName, String srcName, String srcDesc, String dstClsName, String dstName, String dstDesc) {
-		get(srcClsName).field(srcName, srcDesc).setMapping(dstName, dstDesc);
+		get(srcClsName).field(srcName, srcDesc).setMapping(pool.intern(dstName), pool.intern(dstDesc));
 	}
 
 	@Override
@@ -215,13 +262,39 @@ public class MappingBlob implements IMappingAcceptor, Iterable<Mapping> {
 		return mappings.values().iterator();
 	}
 
+	/** Add all the mappings from the given blob to this one, preferring the given blob's names when both have one */
+	public void merge(MappingBlob other) {
+		for (Mapping mapping : other.mappings.values()) {
+			Mapping existing = get(mapping.from);
+
+			if (mapping.to != null) existing.to = pool.intern(mapping.to);
+
+			for (Method method : mapping.methods()) {
+				Method target = existing.method(method);
+				if (method.name() != null) target.setMapping(pool.intern(method.name()), pool.intern(method.desc()));
+
+				if (other.pool != pool) {
+					String[] args = method.args().clone();
+					for (int i = 0; i < args.length; i++) args[i] = pool.intern(args[i]);
+					target.mergeArgs(args);
+				} else {
+					target.mergeArgs(method.args());
+				}
+			}
+
+			for (Field field : mapping.fields()) {
+				if (field.name() != null) existing.field(field).setMapping(pool.intern(field.name()), pool.intern(field.desc()));
+			}
+		}
+	}
+
 	public enum InvertionTarget {
 		FIELDS, METHODS, MEMBERS, METHOD_ARGS, ALL;
 	}
 
 	public MappingBlob invert(InvertionTarget... targets) {
 		Set<InvertionTarget> aims = EnumSet.noneOf(InvertionTarget.class);
-		MappingBlob invertion = new MappingBlob();
+		MappingBlob invertion = new MappingBlob(pool);
 
 		for (InvertionTarget target : targets) {
 			switch (target) {
@@ -245,10 +318,10 @@ public class MappingBlob implements IMappingAcceptor, Iterable<Mapping> {
 		boolean doMethods = aims.contains(InvertionTarget.METHODS);
 		boolean doArgs = aims.contains(InvertionTarget.METHOD_ARGS);
 
-		UnaryOperator<String> classRemapper = name -> {
+		DescRemapper classRemapper = new DescRemapper(name -> {
 			String mapping = tryMapName(name);
 			return mapping != null ? mapping : name;
-		};
+		});
 
 		for (Mapping mapping : mappings.values()) {
 			if (mapping.to == null) {//If there is no mapped class name there is nothing for it to invert to
@@ -264,7 +337,7 @@ public class MappingBlob implements IMappingAcceptor, Iterable<Mapping> {
 					if (field.name() == null) continue;
 					//assert field.desc() != null: mapping.from + '#' + field.fromName + " (" + field.fromDesc + ") changes name without a changed descriptor";
 
-					String desc = field.desc() != null ? field.desc() : MappingSplat.remapDesc(field.fromDesc, classRemapper);
+					String desc = field.desc() != null ? field.desc() : classRemapper.remap(field.fromDesc);
 					invertion.acceptField(mapping.to, field.name(), desc, mapping.from, field.fromName, field.fromDesc);
 				}
 			}
@@ -274,7 +347,7 @@ public class MappingBlob implements IMappingAcceptor, Iterable<Mapping> {
 					if (method.name() == null) continue;
 					//assert method.desc() != null: mapping.from + '#' + method.fromName + method.fromDesc + " changes name without a changed descriptor";
 
-					String desc = method.desc() != null ? method.desc() : MappingSplat.remapDesc(method.fromDesc, classRemapper);
+					String desc = method.desc() != null ? method.desc() : classRemapper.remap(method.fromDesc);
 					invertion.acceptMethod(mapping.to, method.name(), desc, mapping.from, method.fromName, method.fromDesc);
 					if (doArgs) invertion.get(mapping.to).method(method.name(), desc).args(method.args());
 				}
@@ -284,40 +357,45 @@ public class MappingBlob implements IMappingAcceptor, Iterable<Mapping> {
 		return invertion;
 	}
 
-	public MappingBlob rename(MappingBlob blob) {
-		MappingBlob remap = new MappingBlob();
+	/** A view of the blob with the classes and members inverted, worked out as they are looked up rather than copied as {@link #invert(InvertionTarget...)} does */
+	public MappingView invertedView() {
+		return new InvertedMappings(this);
+	}
+
+	public MappingBlob rename(MappingView blob) {
+		MappingBlob remap = new MappingBlob(pool);
 
-		UnaryOperator<String> classRemapper = name -> {
+		DescRemapper classRemapper = new DescRemapper(name -> {
 			String mapping = blob.tryMapName(name);
 			return mapping != null ? mapping : name;
-		};
+		});
 
 		for (Mapping mapping : mappings.values()) {
-			Mapping bridge = blob.mappings.get(mapping.from);
-			boolean useBridge = bridge != null;
+			String bridgedName = blob.tryMapName(mapping.from);
+			boolean useBridge = bridgedName != null;
 
-			String className = useBridge ? bridge.to : mapping.from;
+			String className = useBridge ? bridgedName : mapping.from;
 			remap.acceptClass(className, mapping.to);
 
 			for (Field field : mapping.fields()) {
-				if (useBridge && bridge.hasField(field)) {
-					Field bridged = bridge.field(field);
+				if (useBridge) {
+					Field bridged = blob.tryMapField(mapping.from, field.fromName, field.fromDesc);
 
-					if (bridged.name() != null) {
+					if (bridged != null) {
 						assert bridged.desc() != null;
 						remap.acceptField(className, bridged.name(), bridged.desc(), mapping.to, field.name(), field.desc());
 						continue;
 					}
 				}
 
-				remap.acceptField(className, field.fromName, MappingSplat.remapDesc(field.fromDesc, classRemapper), mapping.to, field.name(), field.desc());
+				remap.acceptField(className, field.fromName, classRemapper.remap(field.fromDesc), mapping.to, field.name(), field.desc());
 			}
 
 			for (Method method : mapping.methods()) {
-				if (useBridge && bridge.hasMethod(method)) {
-					Method bridged = bridge.method(method);
+				if (useBridge) {
+					Field bridged = blob.tryMapMethod(mapping.from, method.fromName, method.fromDesc);
 
-					if (bridged.name() != null) {
+					if (bridged != null) {
 						assert bridged.desc() != null;
 						remap.acceptMethod(className, bridged.name(), bridged.desc(), mapping.to, method.name(), method.desc());
 						remap.get(className).method(bridged.name(), bridged.desc()).args(method.args());
@@ -325,7 +403,7 @@ public class MappingBlob implements IMappingAcceptor, Iterable<Mapping> {
 					}
 				}
 
-				String desc = MappingSplat.remapDesc(method.fromDesc, classRemapper);
+				String desc = classRemapper.remap(method.fromDesc);
 				remap.acceptMethod(className, method.fromName, desc, mapping.to, method.name(), method.desc());
 				remap.get(className).method(method.fromName, desc).args(method.args());
 			}
@@ -23,6 +23,7 @@
  */
 package net.fabricmc.loom.providers.mappings;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -32,11 +33,14 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.StringJoiner;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.UnaryOperator;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
+import com.google.common.collect.Lists;
+
 import net.fabricmc.stitch.util.Pair;
 
 import net.fabricmc.loom.providers.mappings.MappingBlob.Mapping;
@@ -139,9 +143,9 @@ public class MappingSplat implements Iterable<CombinedMapping> {
 		}
 
 		public final String from, fallback, to;
-		final Map<String, CombinedMethod> methods = new HashMap<>();
-		final Map<String, ArgOnlyMethod> bonusArgs = new HashMap<>();
-		final Map<String, CombinedField> fields = new HashMap<>();
+		final MemberIndex<CombinedMethod> methods = new MemberIndex<>(method -> method.from, method -> method.fromDesc);
+		final MemberIndex<ArgOnlyMethod> bonusArgs = new MemberIndex<>(method -> method.from, method -> method.fromDesc);
+		final MemberIndex<CombinedField> fields = new MemberIndex<>(field -> field.from, field -> field.fromDesc);
 
 		public CombinedMapping(String from, String fallback, String to) {
 			this.from = from;
@@ -150,125 +154,190 @@ public class MappingSplat implements Iterable<CombinedMapping> {
 		}
 
 		public Iterable<CombinedMethod> methods() {
-			return methods.values();
+			return methods;
 		}
 
 		public Iterable<ArgOnlyMethod> bonusArgs() {
-			return bonusArgs.values();
+			return bonusArgs;
 		}
 
 		public Iterable<ArgOnlyMethod> allArgs() {
-			Set<ArgOnlyMethod> args = new HashSet<>(bonusArgs.values());
-			methods.values().stream().filter(CombinedMethod::hasArgs).map(ArgOnlyMethod::new).forEach(args::add);
+			Set<ArgOnlyMethod> args = new HashSet<>(bonusArgs.size() + methods.size());
+			bonusArgs.forEach(args::add);
+			methods.stream().filter(CombinedMethod::hasArgs).map(ArgOnlyMethod::new).forEach(args::add);
 			return Collections.unmodifiableSet(args);
 		}
 
 		public Iterable<CombinedField> fields() {
-			return fields.values();
+			return fields;
 		}
 	}
 
+	/** How many classes are combined at once in parallel, enough that the descriptor caches have time to be useful */
+	private static final int CHUNK_SIZE = 256;
 	private final Map<String, CombinedMapping> mappings = new HashMap<>();
 
 	public MappingSplat(MappingBlob mappings, MappingBlob fallback) {
-		UnaryOperator<String> fallbackRemapper = className -> {
+		this(mappings, fallback, false);
+	}
+
+	/**
+	 * Combine the given mappings over the fallback, optionally splitting the work for each class between the common {@link ForkJoinPool}
+	 *
+	 * <p>The classes themselves are always combined in order first, so the result is the same whether done in parallel or not
+	 */
+	public MappingSplat(MappingBlob mappings, MappingBlob fallback, boolean parallel) {
+		UnaryOperator<String> fallbackMapper = className -> {
 			String triedMapping = fallback.tryMapName(className);
 			return triedMapping != null ? triedMapping : className;
 		};
-		UnaryOperator<String> remapper = className -> {
+		UnaryOperator<String> mapper = className -> {
 			String triedMapping = mappings.tryMapName(className);
-			return triedMapping != null ? triedMapping : fallbackRemapper.apply(className);
+			return triedMapping != null ? triedMapping : fallbackMapper.apply(className);
 		};
 
+		//Everything made here is shared through the primary mappings' pool, which only this adds to whilst the members are combined
+		UnaryOperator<String> pool = parallel ? mappings.pool::internSynchronized : mappings.pool::intern;
+
 		//Fallback should cover all of mapping's class names, with the potential for more it doesn't have
+		List<Mapping> classes = new ArrayList<>();
 		for (Mapping mapping : fallback) {
 			String notch = mapping.from;
 			Mapping other = mappings.get(notch);
 
-			String inter = either(mapping.to, notch);
-			String name = findName(other.to, inter, notch, mappings);
+			String inter = pool.apply(either(mapping.to, notch));
+			String name = pool.apply(findName(other.to, inter, notch, mappings));
 			assert !inter.equals(notch) || name.equals(notch);
 
-			CombinedMapping combined = new CombinedMapping(notch, inter, name);
-			this.mappings.put(notch, combined);
+			this.mappings.put(notch, new CombinedMapping(notch, inter, name));
+			classes.add(mapping);
 
-			for (Method method : mapping.methods()) {
-				Method otherMethod = other.method(method);
-				notch = method.fromName;
+			//Make sure every member exists now so neither blob changes whilst the members are combined
+			for (Method method : mapping.methods()) other.method(method);
+			for (Field field : mapping.fields()) other.field(field);
+		}
 
-				if (notch.charAt(0) == '<') {
-					name = inter = notch;
-				} else {
-					inter = method.nameOr(notch);
-					name = otherMethod.nameOr(inter);
-				}
-				String interDesc = makeDesc(method, fallbackRemapper);
-				String nameDesc = makeDesc(otherMethod, remapper);
-				String[] args = either(otherMethod.args(), method.args());
+		//Each chunk of classes gets its own descriptor remappers (as they're not thread safe), which are dropped along with their caches once it is done
+		Consumer<List<Mapping>> memberCombiner = chunk -> {
+			DescRemapper fallbackRemapper = new DescRemapper(fallbackMapper);
+			DescRemapper remapper = new DescRemapper(mapper);
+
+			for (Mapping mapping : chunk) {
+				Mapping other = mappings.get(mapping.from);
+				CombinedMapping combined = this.mappings.get(mapping.from);
+
+				for (Method method : mapping.methods()) {
+					Method otherMethod = other.method(method);
+					String notch = method.fromName;
+
+					String inter, name;
+					if (notch.charAt(0) == '<') {
+						name = inter = notch;
+					} else {
+						inter = pool.apply(method.nameOr(notch));
+						name = otherMethod.nameOr(inter);
+					}
+					String interDesc = pool.apply(makeDesc(method, fallbackRemapper));
+					String nameDesc = pool.apply(makeDesc(otherMethod, remapper));
+					String[] args = either(otherMethod.args(), method.args());
 
-				CombinedMethod combinedMethod = new CombinedMethod(notch, method.fromDesc, inter, interDesc, name, nameDesc, args);
-				combined.methods.put(notch + method.fromDesc, combinedMethod);
-			}
+					CombinedMethod combinedMethod = new CombinedMethod(notch, method.fromDesc, inter, interDesc, name, nameDesc, args);
+					combined.methods.put(combinedMethod);
+				}
 
-			for (Field field : mapping.fields()) {
-				Field otherField = other.field(field);
-				notch = field.fromName;
+				for (Field field : mapping.fields()) {
+					Field otherField = other.field(field);
+					String notch = field.fromName;
 
-				inter = field.nameOr(notch);
-				String interDesc = makeDesc(field, fallbackRemapper);
-				name = otherField.nameOr(inter);
-				String nameDesc = makeDesc(otherField, remapper);
+					String inter = pool.apply(field.nameOr(notch));
+					String interDesc = pool.apply(makeDesc(field, fallbackRemapper));
+					String name = otherField.nameOr(inter);
+					String nameDesc = pool.apply(makeDesc(otherField, remapper));
 
-				CombinedField combinedField = new CombinedField(notch, field.fromDesc, inter, interDesc, name, nameDesc);
-				combined.fields.put(notch + ";;" + field.fromDesc, combinedField);
+					CombinedField combinedField = new CombinedField(notch, field.fromDesc, inter, interDesc, name, nameDesc);
+					combined.fields.put(combinedField);
+				}
 			}
+		};
+		if (parallel) {
+			Lists.partition(classes, CHUNK_SIZE).parallelStream().forEach(memberCombiner);
+		} else {
+			memberCombiner.accept(classes);
 		}
 
 		//Sometimes Yarn versions include their own mappings without Intermediary backing (which is bad really)
-		Map<String, Pair<String, Map<String, String>>> yarnOnlyMappings = new HashMap<>();
-
-		for (Mapping mapping : mappings) {
-			String notch = mapping.from;
+		Function<List<Mapping>, List<Map<String, String>>> extraFinder = chunk -> {
+			DescRemapper fallbackRemapper = new DescRemapper(fallbackMapper);
+			DescRemapper remapper = new DescRemapper(mapper);
+			List<Map<String, String>> found = new ArrayList<>(chunk.size());
+
+			for (Mapping mapping : chunk) {
+				CombinedMapping combined = this.mappings.get(mapping.from);
+				if (combined == null) {//Only possible if the class is missing from fallback, as every fallback class has been combined above
+					System.err.println("Missing from combined");
+					throw new IllegalStateException("Extra mappings missing from fallback! Unable to find " + mapping.from + " (" + mapping.to + ')');
+				}
+				Mapping other = fallback.get(mapping.from);
+				Map<String, String> extras = null;
+
+				for (Method method : mapping.methods()) {
+					if (other.hasMethod(method)) continue;
+					String notch = method.fromName;
+
+					if (notch.charAt(0) == '<') {
+						//Args for constructors (and static blocks) won't appear in fallback from intermediary mappings not assigning constructor names
+						String interDesc = pool.apply(fallbackRemapper.remap(method.fromDesc));
+						String nameDesc = pool.apply(makeDesc(method, remapper));
+
+						CombinedMethod combinedMethod = new CombinedMethod(notch, method.fromDesc, notch, interDesc, notch, nameDesc, method.args());
+						combined.methods.put(combinedMethod);
+					} else {
+						if (!notch.equals(method.nameOr(notch))) {
+							//Changing Notch names without intermediaries to back it up is not cross-version safe and shouldn't be done
+							//throw new IllegalStateException("Extra mappings missing from fallback! Unable to find " + mapping.from + '#' + method.fromName + method.fromDesc + " (" + mapping.to + '#' + method.name() + ')');
+
+							//Yarn sometimes does however, so we'll just the cases where it does and not use them
+							if (extras == null) extras = new HashMap<>();
+							extras.put(method.fromName + method.fromDesc, method.name());
+						}
 
-			Mapping other = fallback.get(notch);
-			CombinedMapping combined = this.mappings.get(notch);
-			if (other == null || combined == null) {
-				System.err.println("Missing " + (other == null ? combined == null ? "both" : "from mappings" : "from combined"));
-				throw new IllegalStateException("Extra mappings missing from fallback! Unable to find " + notch + " (" + mapping.to + ')');
-			}
+						if (method.hasArgs()) {
+							ArgOnlyMethod bonusMethod = new ArgOnlyMethod(notch, method.fromDesc, method.args());
+							combined.bonusArgs.put(bonusMethod);
+						}
+					}
+				}
 
-			for (Method method : mapping.methods()) {
-				if (other.hasMethod(method)) continue;
-				notch = method.fromName;
+				for (Field field : mapping.fields()) {
+					if (other.hasField(field)) continue;
 
-				if (notch.charAt(0) == '<') {
-					//Args for constructors (and static blocks) won't appear in fallback from intermediary mappings not assigning constructor names
-					String interDesc = remapDesc(method.fromDesc, fallbackRemapper);
-					String nameDesc = makeDesc(method, remapper);
+					if (extras == null) extras = new HashMap<>();
+					extras.put(field.fromDesc + ' ' + field.fromName, field.name());
+					//throw new IllegalStateException("Extra mapping missing from fallback! Unable to find " + mapping.from + '#' + field.fromName + " (" + field.fromDesc + ')');
+				}
 
-					CombinedMethod combinedMethod = new CombinedMethod(notch, method.fromDesc, notch, interDesc, notch, nameDesc, method.args());
-					combined.methods.put(notch + method.fromDesc, combinedMethod);
-				} else {
-					if (!notch.equals(method.nameOr(notch))) {
-						//Changing Notch names without intermediaries to back it up is not cross-version safe and shouldn't be done
-						//throw new IllegalStateException("Extra mappings missing from fallback! Unable to find " + mapping.from + '#' + method.fromName + method.fromDesc + " (" + mapping.to + '#' + method.name() + ')');
+				found.add(extras);
+			}
 
-						//Yarn sometimes does however, so we'll just the cases where it does and not use them
-						yarnOnlyMappings.computeIfAbsent(mapping.from, k -> Pair.of(mapping.to, new HashMap<>())).getRight().put(method.fromName + method.fromDesc, method.name());
-					}
+			return found;
+		};
 
-					if (method.hasArgs()) {
-						ArgOnlyMethod bonusMethod = new ArgOnlyMethod(notch, method.fromDesc, method.args());
-						combined.bonusArgs.put(notch + method.fromDesc, bonusMethod);
-					}
-				}
-			}
+		List<Mapping> extraClasses = Lists.newArrayList(mappings);
+		List<Map<String, String>> classExtras;
+		if (parallel) {
+			classExtras = Lists.partition(extraClasses, CHUNK_SIZE).parallelStream().map(extraFinder).flatMap(List::stream).collect(Collectors.toList());
+		} else {
+			classExtras = extraFinder.apply(extraClasses);
+		}
 
-			for (Field field : mapping.fields()) {
-				if (other.hasField(field)) continue;
+		//Collected in order so the extras come out the same either way
+		Map<String, Pair<String, Map<String, String>>> yarnOnlyMappings = new HashMap<>();
+		for (int i = 0, end = extraClasses.size(); i < end; i++) {
+			Map<String, String> extra = classExtras.get(i);
 
-				yarnOnlyMappings.computeIfAbsent(mapping.from, k -> Pair.of(mapping.to, new HashMap<>())).getRight().put(field.fromDesc + ' ' + field.fromName, field.name());
-				//throw new IllegalStateException("Extra mapping missing from fallback! Unable to find " + mapping.from + '#' + field.fromName + " (" + field.fromDesc + ')');
+			if (extra != null) {
+				Mapping mapping = extraClasses.get(i);
+				yarnOnlyMappings.put(mapping.from, Pair.of(mapping.to, extra));
 			}
 		}
 
@@ -341,24 +410,16 @@ public class MappingSplat implements Iterable<CombinedMapping> {
 		}
 	}
 
-	private static String makeDesc(Field method, UnaryOperator<String> remapper) {
+	private static String makeDesc(Field method, DescRemapper remapper) {
 		if (method.desc() != null) {
 			return method.desc();
 		} else {
-			return remapDesc(method.fromDesc, remapper);
+			return remapper.remap(method.fromDesc);
 		}
 	}
 
-	private static final Pattern CLASS_FINDER = Pattern.compile("L([^;]+);");
+	/** Remap a one-off descriptor, a {@link DescRemapper} should be used instead when remapping many */
 	public static String remapDesc(String desc, UnaryOperator<String> classRemapper) {
-		StringBuffer buf = new StringBuffer();
-
-		Matcher matcher = CLASS_FINDER.matcher(desc);
-		while (matcher.find()) {
-			matcher.appendReplacement(buf, Matcher.quoteReplacement('L' + classRemapper.apply(matcher.group(1)) + ';'));
-		}
-		matcher.appendTail(buf);
-
-		return buf.toString();
+		return DescRemapper.remap(desc, classRemapper, new StringBuilder(desc.length()));
 	}
 }
\ No newline at end of file
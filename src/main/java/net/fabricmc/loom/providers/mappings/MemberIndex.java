@@ -0,0 +1,138 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2019 Chocohead
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.fabricmc.loom.providers.mappings;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * An open addressed set of members keyed on their name and descriptor together,
+ * looked up by the pair directly rather than making a combined string key each time.
+ */
+final class MemberIndex<T> implements Iterable<T> {
+	private static final Object[] EMPTY = new Object[0];
+	private final Function<? super T, String> nameOf, descOf;
+	private Object[] table = EMPTY;
+	private int size;
+
+	MemberIndex(Function<? super T, String> nameOf, Function<? super T, String> descOf) {
+		this.nameOf = nameOf;
+		this.descOf = descOf;
+	}
+
+	private static int hash(String name, String desc) {
+		int hash = name.hashCode() * 31 + desc.hashCode();
+		return hash ^ (hash >>> 16);
+	}
+
+	@SuppressWarnings("unchecked")
+	private int slot(String name, String desc) {
+		int mask = table.length - 1;
+
+		for (int slot = hash(name, desc) & mask;; slot = (slot + 1) & mask) {
+			T member = (T) table[slot];
+
+			if (member == null || name.equals(nameOf.apply(member)) && desc.equals(descOf.apply(member))) {
+				return slot;
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	public T get(String name, String desc) {
+		return size > 0 ? (T) table[slot(name, desc)] : null;
+	}
+
+	public boolean contains(String name, String desc) {
+		return get(name, desc) != null;
+	}
+
+	/** Add the given member, returning the member it replaced with the same name and descriptor (if there was one) */
+	@SuppressWarnings("unchecked")
+	public T put(T member) {
+		if (size >= table.length >> 1) grow();
+
+		int slot = slot(nameOf.apply(member), descOf.apply(member));
+		T existing = (T) table[slot];
+
+		table[slot] = member;
+		if (existing == null) size++;
+		return existing;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void grow() {
+		Object[] old = table;
+		table = new Object[Math.max(8, old.length << 1)];
+
+		for (Object member : old) {
+			if (member != null) table[slot(nameOf.apply((T) member), descOf.apply((T) member))] = member;
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	@Override
+	public Iterator<T> iterator() {
+		return new Iterator<T>() {
+			private final Object[] table = MemberIndex.this.table;
+			private int next = advance(0);
+
+			private int advance(int from) {
+				while (from < table.length && table[from] == null) from++;
+				return from;
+			}
+
+			@Override
+			public boolean hasNext() {
+				return next < table.length;
+			}
+
+			@Override
+			@SuppressWarnings("unchecked")
+			public T next() {
+				if (!hasNext()) throw new NoSuchElementException();
+
+				T member = (T) table[next];
+				next = advance(next + 1);
+				return member;
+			}
+		};
+	}
+
+	public Stream<T> stream() {
+		return StreamSupport.stream(Spliterators.spliterator(iterator(), size, Spliterator.DISTINCT | Spliterator.NONNULL), false);
+	}
+}
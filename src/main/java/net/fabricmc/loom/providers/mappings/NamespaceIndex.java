@@ -0,0 +1,122 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2019 Chocohead
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.fabricmc.loom.providers.mappings;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import net.fabricmc.mappings.ClassEntry;
+import net.fabricmc.mappings.EntryTriple;
+import net.fabricmc.mappings.FieldEntry;
+import net.fabricmc.mappings.Mappings;
+import net.fabricmc.mappings.MethodEntry;
+
+/**
+ * An index of the classes, fields and methods in a {@link Mappings} by their names in each namespace,
+ * so they can be looked up (and mapped to any other namespace) without going through every entry each time.
+ *
+ * <p>Each namespace is only indexed the first time it is asked for, after which it is kept for as long as the index is.
+ */
+public final class NamespaceIndex {
+	private final Mappings mappings;
+	private final Map<String, Map<String, ClassEntry>> classes = new ConcurrentHashMap<>();
+	private final Map<String, String[]> sortedClasses = new ConcurrentHashMap<>();
+	private final Map<String, Map<EntryTriple, FieldEntry>> fields = new ConcurrentHashMap<>();
+	private final Map<String, Map<EntryTriple, MethodEntry>> methods = new ConcurrentHashMap<>();
+
+	public NamespaceIndex(Mappings mappings) {
+		this.mappings = mappings;
+	}
+
+	public Mappings getMappings() {
+		return mappings;
+	}
+
+	private static <K, T> Map<K, T> index(Iterable<T> entries, Function<T, K> key) {
+		Map<K, T> index = new HashMap<>();
+
+		for (T entry : entries) {
+			K name = key.apply(entry);
+			if (name != null) index.putIfAbsent(name, entry);
+		}
+
+		return Collections.unmodifiableMap(index);
+	}
+
+	private Map<String, ClassEntry> classes(String namespace) {
+		return classes.computeIfAbsent(namespace, k -> index(mappings.getClassEntries(), entry -> entry.get(namespace)));
+	}
+
+	/** All the class names in the given namespace */
+	public Set<String> getClasses(String namespace) {
+		return classes(namespace).keySet();
+	}
+
+	/** The given class (if it is in the namespace) along with every class nested within it, found without going through every class */
+	public List<String> getNest(String namespace, String outerClass) {
+		String[] sorted = sortedClasses.computeIfAbsent(namespace, k -> {
+			String[] names = getClasses(namespace).toArray(new String[0]);
+			Arrays.sort(names);
+			return names;
+		});
+
+		//Everything nested is sorted straight after the outer class, up until the next name which doesn't start with outerClass$
+		int from = Arrays.binarySearch(sorted, outerClass);
+		if (from < 0) from = -(from + 1);
+		int to = Arrays.binarySearch(sorted, from, sorted.length, outerClass + (char) ('$' + 1));
+		if (to < 0) to = -(to + 1);
+
+		List<String> nest = new ArrayList<>(to - from);
+		for (int i = from; i < to; i++) {
+			String name = sorted[i];
+			if (name.length() == outerClass.length() || name.charAt(outerClass.length()) == '$') nest.add(name);
+		}
+		return nest;
+	}
+
+	public ClassEntry getClass(String namespace, String name) {
+		return classes(namespace).get(name);
+	}
+
+	/** The name of the given class in the to namespace, or {@code null} if it isn't in the from namespace */
+	public String mapClass(String from, String to, String name) {
+		ClassEntry entry = getClass(from, name);
+		return entry != null ? entry.get(to) : null;
+	}
+
+	public FieldEntry getField(String namespace, EntryTriple field) {
+		return fields.computeIfAbsent(namespace, k -> index(mappings.getFieldEntries(), entry -> entry.get(namespace))).get(field);
+	}
+
+	public MethodEntry getMethod(String namespace, EntryTriple method) {
+		return methods.computeIfAbsent(namespace, k -> index(mappings.getMethodEntries(), entry -> entry.get(namespace))).get(method);
+	}
+}
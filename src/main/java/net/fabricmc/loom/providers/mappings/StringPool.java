@@ -0,0 +1,120 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2019 Chocohead
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.fabricmc.loom.providers.mappings;
+
+/**
+ * An open addressed set of strings which can be looked up by character slices without making a new string each time.
+ *
+ * <p>Also used to share a single copy of every name and descriptor across a mapping set and the sets derived from it.
+ */
+final class StringPool {
+	private String[] table = new String[1 << 12];
+	private int size;
+
+	/** The pool to read strings into for the given acceptor, using the blob's own pool when it is one so nothing needs interning twice */
+	static StringPool forAcceptor(IMappingAcceptor acceptor) {
+		return acceptor instanceof MappingBlob ? ((MappingBlob) acceptor).pool : new StringPool();
+	}
+
+	public String intern(char[] chars, int start, int end) {
+		int hash = 0;
+		for (int i = start; i < end; i++) {
+			hash = 31 * hash + chars[i];
+		}
+
+		int mask = table.length - 1;
+		for (int slot = spread(hash) & mask;; slot = (slot + 1) & mask) {
+			String existing = table[slot];
+
+			if (existing == null) {
+				return add(slot, new String(chars, start, end - start));
+			}
+
+			if (existing.hashCode() == hash && matches(existing, chars, start, end)) {
+				return existing;
+			}
+		}
+	}
+
+	/** The pooled copy of the given string, which becomes the pooled copy if there isn't one yet */
+	public String intern(String value) {
+		if (value == null) return null;
+		int hash = value.hashCode();
+
+		int mask = table.length - 1;
+		for (int slot = spread(hash) & mask;; slot = (slot + 1) & mask) {
+			String existing = table[slot];
+
+			if (existing == null) {
+				return add(slot, value);
+			}
+
+			if (existing.hashCode() == hash && existing.equals(value)) {
+				return existing;
+			}
+		}
+	}
+
+	/** As {@link #intern(String)}, but safe to call from several threads at once so long as nothing else adds to the pool meanwhile */
+	public synchronized String internSynchronized(String value) {
+		return intern(value);
+	}
+
+	private String add(int slot, String value) {
+		table[slot] = value;
+		if (++size > table.length >> 1) grow();
+		return value;
+	}
+
+	private static boolean matches(String existing, char[] chars, int start, int end) {
+		if (existing.length() != end - start) return false;
+
+		for (int i = start, j = 0; i < end; i++, j++) {
+			if (existing.charAt(j) != chars[i]) return false;
+		}
+
+		return true;
+	}
+
+	/** Mixes every bit of the hash into the low ones, as names like {@code field_1234} have runs of adjacent hashes which would otherwise fill runs of adjacent slots */
+	private static int spread(int hash) {
+		hash = (hash ^ (hash >>> 16)) * 0x85EBCA6B;
+		hash = (hash ^ (hash >>> 13)) * 0xC2B2AE35;
+		return hash ^ (hash >>> 16);
+	}
+
+	private void grow() {
+		String[] old = table;
+		table = new String[old.length << 1];
+
+		int mask = table.length - 1;
+		for (String value : old) {
+			if (value == null) continue;
+
+			int slot = spread(value.hashCode()) & mask;
+			while (table[slot] != null) slot = (slot + 1) & mask;
+			table[slot] = value;
+		}
+	}
+}
@@ -0,0 +1,368 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2019 Chocohead
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.fabricmc.loom.providers.mappings;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.MoreFiles;
+
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+import net.fabricmc.mappings.ClassEntry;
+import net.fabricmc.mappings.EntryTriple;
+import net.fabricmc.mappings.FieldEntry;
+import net.fabricmc.mappings.Mappings;
+import net.fabricmc.mappings.MappingsProvider;
+import net.fabricmc.mappings.MethodEntry;
+
+/**
+ * A compact binary copy of a tiny file kept next to it, which can be loaded far faster than the tiny file can be parsed.
+ *
+ * <p>The file is a header (with the size, modification time and hash of the tiny file it was made from), a pool of every distinct string,
+ * then a column of string indexes for each namespace's class names and each namespace's member owners, names and descriptors.
+ */
+public class TinyBinary {
+	private static final Logger log = Logging.getLogger(TinyBinary.class);
+	private static final int MAGIC = 0x4C544232; //LTB2
+	private static final int HASH_LENGTH = 32;
+	/** The magic, the size and modification time of the tiny file, then its hash */
+	private static final int HEADER_LENGTH = 4 + 8 + 8 + HASH_LENGTH;
+
+	/** Read the given tiny file, using the binary copy if it is up to date and making a new copy if not */
+	public static Mappings read(Path tiny) throws IOException {
+		long size = Files.size(tiny);
+		long modified = Files.getLastModifiedTime(tiny).toMillis();
+		Path binary = binaryFor(tiny);
+
+		if (Files.exists(binary)) {
+			Mappings mappings = load(binary, tiny, size, modified);
+			if (mappings != null) return mappings;
+		}
+
+		return create(tiny, size, modified);
+	}
+
+	/** Parse the given tiny file, writing the binary copy for it */
+	public static Mappings create(Path tiny) throws IOException {
+		return create(tiny, Files.size(tiny), Files.getLastModifiedTime(tiny).toMillis());
+	}
+
+	private static Mappings create(Path tiny, long size, long modified) throws IOException {
+		Mappings mappings;
+		try (InputStream in = Files.newInputStream(tiny)) {
+			mappings = MappingsProvider.readTinyMappings(in, false);
+		}
+
+		Path binary = binaryFor(tiny);
+		Path temp = binary.resolveSibling(binary.getFileName() + ".tmp");
+		try {
+			write(mappings, temp, size, modified, hash(tiny));
+			Files.move(temp, binary, StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			//Not being able to write the copy isn't fatal, it'll just be slower to load next time
+			log.warn("Unable to write binary mappings to " + binary, e);
+			Files.deleteIfExists(temp);
+		}
+
+		return mappings;
+	}
+
+	public static Path binaryFor(Path tiny) {
+		return tiny.resolveSibling(tiny.getFileName() + ".bin");
+	}
+
+	/** Update the size and modification time the given binary copy was made from, so its tiny file doesn't need hashing again next time */
+	private static void restamp(Path binary, long size, long modified) {
+		try (FileChannel channel = FileChannel.open(binary, StandardOpenOption.WRITE)) {
+			ByteBuffer stamp = ByteBuffer.allocate(16);
+			stamp.putLong(size).putLong(modified).flip();
+
+			while (stamp.hasRemaining()) {
+				channel.write(stamp, 4 + 16 - stamp.remaining());
+			}
+		} catch (IOException e) {
+			//Not being able to isn't fatal, it'll just have to hash the tiny file again next time
+			log.info("Unable to update binary mappings " + binary, e);
+		}
+	}
+
+	private static byte[] hash(Path file) throws IOException {
+		return MoreFiles.asByteSource(file).hash(Hashing.sha256()).asBytes();
+	}
+
+	private static void write(Mappings mappings, Path to, long size, long modified, byte[] hash) throws IOException {
+		String[] namespaces = mappings.getNamespaces().toArray(new String[0]);
+		Map<String, Integer> pool = new HashMap<>();
+		List<String> strings = new ArrayList<>();
+		Function<String, Integer> index = value -> {
+			if (value == null) return -1;
+
+			return pool.computeIfAbsent(value, k -> {
+				strings.add(k);
+				return strings.size() - 1;
+			});
+		};
+
+		int[][] classes = new int[namespaces.length][mappings.getClassEntries().size()];
+		int row = 0;
+		for (ClassEntry entry : mappings.getClassEntries()) {
+			for (int namespace = 0; namespace < namespaces.length; namespace++) {
+				classes[namespace][row] = index.apply(entry.get(namespaces[namespace]));
+			}
+			row++;
+		}
+
+		int[][] fields = new int[namespaces.length * 3][mappings.getFieldEntries().size()];
+		row = 0;
+		for (FieldEntry entry : mappings.getFieldEntries()) {
+			fillMember(fields, row++, namespaces, entry::get, index);
+		}
+
+		int[][] methods = new int[namespaces.length * 3][mappings.getMethodEntries().size()];
+		row = 0;
+		for (MethodEntry entry : mappings.getMethodEntries()) {
+			fillMember(methods, row++, namespaces, entry::get, index);
+		}
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(to)))) {
+			out.writeInt(MAGIC);
+			out.writeLong(size);
+			out.writeLong(modified);
+			out.write(hash);
+
+			out.writeInt(namespaces.length);
+			for (String namespace : namespaces) {
+				out.writeInt(index.apply(namespace));
+			}
+
+			out.writeInt(strings.size());
+			for (String string : strings) {
+				byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+
+			writeColumns(out, classes);
+			writeColumns(out, fields);
+			writeColumns(out, methods);
+		}
+	}
+
+	private static void fillMember(int[][] columns, int row, String[] namespaces, Function<String, EntryTriple> entry, Function<String, Integer> index) {
+		for (int namespace = 0, column = 0; namespace < namespaces.length; namespace++) {
+			EntryTriple triple = entry.apply(namespaces[namespace]);
+
+			columns[column++][row] = index.apply(triple != null ? triple.getOwner() : null);
+			columns[column++][row] = index.apply(triple != null ? triple.getName() : null);
+			columns[column++][row] = index.apply(triple != null ? triple.getDesc() : null);
+		}
+	}
+
+	private static void writeColumns(DataOutputStream out, int[][] columns) throws IOException {
+		out.writeInt(columns.length);
+		out.writeInt(columns.length > 0 ? columns[0].length : 0);
+
+		for (int[] column : columns) {
+			for (int value : column) {
+				out.writeInt(value);
+			}
+		}
+	}
+
+	private static Mappings load(Path binary, Path tiny, long size, long modified) throws IOException {
+		ByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(binary, StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+			while (header.hasRemaining() && channel.read(header) >= 0);
+			header.flip();
+
+			if (header.remaining() < HEADER_LENGTH || header.getInt() != MAGIC) return null;
+
+			//Only when the tiny file looks different is it worth hashing to know whether it actually is
+			long madeSize = header.getLong();
+			long madeModified = header.getLong();
+			if (madeSize != size || madeModified != modified) {
+				byte[] hash = new byte[HASH_LENGTH];
+				header.get(hash);
+				if (!Arrays.equals(hash, hash(tiny))) return null;
+
+				restamp(binary, size, modified);
+			}
+
+			//Everything is copied out of the body straight away, so it is read onto the heap rather than mapped which would leave the file locked on Windows
+			buffer = ByteBuffer.allocate(Math.toIntExact(channel.size() - HEADER_LENGTH));
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer) < 0) return null; //Shorter than it was a moment ago, must be being replaced
+			}
+			buffer.flip();
+		}
+
+		int[] namespaceIndexes = new int[buffer.getInt()];
+		for (int i = 0; i < namespaceIndexes.length; i++) {
+			namespaceIndexes[i] = buffer.getInt();
+		}
+
+		String[] strings = new String[buffer.getInt()];
+		byte[] bytes = new byte[256];
+		for (int i = 0; i < strings.length; i++) {
+			int length = buffer.getInt();
+			if (bytes.length < length) bytes = new byte[length];
+
+			buffer.get(bytes, 0, length);
+			strings[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+		}
+
+		String[] namespaces = new String[namespaceIndexes.length];
+		for (int i = 0; i < namespaces.length; i++) {
+			namespaces[i] = strings[namespaceIndexes[i]];
+		}
+
+		return new BinaryMappings(namespaces, strings, readColumns(buffer), readColumns(buffer), readColumns(buffer));
+	}
+
+	private static int[][] readColumns(ByteBuffer buffer) {
+		int[][] columns = new int[buffer.getInt()][buffer.getInt()];
+
+		for (int[] column : columns) {
+			buffer.asIntBuffer().get(column);
+			buffer.position(buffer.position() + column.length * Integer.BYTES);
+		}
+
+		return columns;
+	}
+
+	private static class BinaryMappings implements Mappings {
+		private final String[] namespaces;
+		private final String[] strings;
+		private final int[][] classes;
+		private final List<ClassEntry> classEntries;
+		private final List<FieldEntry> fieldEntries;
+		private final List<MethodEntry> methodEntries;
+
+		BinaryMappings(String[] namespaces, String[] strings, int[][] classes, int[][] fields, int[][] methods) {
+			this.namespaces = namespaces;
+			this.strings = strings;
+			this.classes = classes;
+
+			int rows = classes.length > 0 ? classes[0].length : 0;
+			List<ClassEntry> classEntries = new ArrayList<>(rows);
+			for (int row = 0; row < rows; row++) {
+				int entry = row;
+				classEntries.add(namespace -> className(namespace, entry));
+			}
+			this.classEntries = Collections.unmodifiableList(classEntries);
+
+			rows = fields.length > 0 ? fields[0].length : 0;
+			List<FieldEntry> fieldEntries = new ArrayList<>(rows);
+			for (int row = 0; row < rows; row++) {
+				EntryTriple[] triples = triples(fields, row);
+				fieldEntries.add(namespace -> member(triples, namespace));
+			}
+			this.fieldEntries = Collections.unmodifiableList(fieldEntries);
+
+			rows = methods.length > 0 ? methods[0].length : 0;
+			List<MethodEntry> methodEntries = new ArrayList<>(rows);
+			for (int row = 0; row < rows; row++) {
+				EntryTriple[] triples = triples(methods, row);
+				methodEntries.add(namespace -> member(triples, namespace));
+			}
+			this.methodEntries = Collections.unmodifiableList(methodEntries);
+		}
+
+		private int namespace(String namespace) {
+			for (int i = 0; i < namespaces.length; i++) {
+				if (namespaces[i].equals(namespace)) return i;
+			}
+
+			return -1;
+		}
+
+		private String string(int index) {
+			return index >= 0 ? strings[index] : null;
+		}
+
+		String className(String namespace, int row) {
+			int column = namespace(namespace);
+			return column >= 0 ? string(classes[column][row]) : null;
+		}
+
+		/** The member in each namespace for the given row, made once so every lookup gives the same triple rather than a new one */
+		private EntryTriple[] triples(int[][] columns, int row) {
+			EntryTriple[] triples = new EntryTriple[namespaces.length];
+
+			for (int namespace = 0, column = 0; namespace < namespaces.length; namespace++, column += 3) {
+				if (columns[column][row] < 0) continue; //Not in this namespace
+
+				triples[namespace] = new EntryTriple(string(columns[column][row]), string(columns[column + 1][row]), string(columns[column + 2][row]));
+			}
+
+			return triples;
+		}
+
+		EntryTriple member(EntryTriple[] triples, String namespace) {
+			int column = namespace(namespace);
+			return column >= 0 ? triples[column] : null;
+		}
+
+		@Override
+		public Collection<String> getNamespaces() {
+			return Collections.unmodifiableList(Arrays.asList(namespaces));
+		}
+
+		@Override
+		public Collection<ClassEntry> getClassEntries() {
+			return classEntries;
+		}
+
+		@Override
+		public Collection<FieldEntry> getFieldEntries() {
+			return fieldEntries;
+		}
+
+		@Override
+		public Collection<MethodEntry> getMethodEntries() {
+			return methodEntries;
+		}
+	}
+}
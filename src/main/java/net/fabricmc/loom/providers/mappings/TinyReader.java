@@ -23,23 +23,18 @@
  */
 package net.fabricmc.loom.providers.mappings;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 
 public class TinyReader {
 	public static void readTiny(Path file, IMappingAcceptor mappingAcceptor) throws IOException {
-		try (BufferedReader reader = Files.newBufferedReader(file)) {
-			readTiny(reader, mappingAcceptor);
-		}
+		readTiny(LineTokenizer.read(file, '\t', StringPool.forAcceptor(mappingAcceptor)), mappingAcceptor);
 	}
 
-	private static void readTiny(BufferedReader reader, IMappingAcceptor mappingAcceptor) throws IOException {
+	private static void readTiny(LineTokenizer line, IMappingAcceptor mappingAcceptor) throws IOException {
 		boolean firstLine = true;
-		String line;
 
-		while ((line = reader.readLine()) != null) {
+		while (line.next()) {
 			if (firstLine) {
 				firstLine = false;
 				if (!line.startsWith("v1\t")) throw new IOException("invalid/unsupported tiny file (incorrect header)");
@@ -48,77 +43,67 @@ public class TinyReader {
 
 			if (line.isEmpty() || line.startsWith("#")) continue;
 
-			String[] parts = line.split("\t");
-			if (parts.length < 3) throw new IOException("invalid tiny line (missing columns): "+line);
-
-			switch (parts[0]) {
-			case "CLASS":
-				if (parts.length != 3) throw new IOException("invalid tiny line (extra columns): "+line);
-				if (parts[1].isEmpty()) throw new IOException("invalid tiny line (empty src class): "+line);
-				if (parts[2].isEmpty()) throw new IOException("invalid tiny line (empty dst class): "+line);
-
-				mappingAcceptor.acceptClass(parts[1], parts[2]);
-				break;
-			case "CLS-CMT":
-				/*if (parts.length != 3) throw new IOException("invalid tiny line (extra columns): "+line);
-				if (parts[1].isEmpty()) throw new IOException("invalid tiny line (empty src class): "+line);
-				if (parts[2].isEmpty()) throw new IOException("invalid tiny line (empty class comment): "+line);
-
-				mappingAcceptor.acceptClassComment(parts[1], unescape(parts[2]));*/
-				break;
-			case "METHOD":
-				if (parts.length != 5) throw new IOException("invalid tiny line (missing/extra columns): "+line);
-				if (parts[1].isEmpty()) throw new IOException("invalid tiny line (empty src class): "+line);
-				if (parts[2].isEmpty()) throw new IOException("invalid tiny line (empty src method desc): "+line);
-				if (parts[3].isEmpty()) throw new IOException("invalid tiny line (empty src method name): "+line);
-				if (parts[4].isEmpty()) throw new IOException("invalid tiny line (empty dst method name): "+line);
-
-				mappingAcceptor.acceptMethod(parts[1], parts[3], parts[2], null, parts[4], null);
-				break;
-			case "MTH-CMT":
-				/*if (parts.length != 5) throw new IOException("invalid tiny line (missing/extra columns): "+line);
-				if (parts[1].isEmpty()) throw new IOException("invalid tiny line (empty src class): "+line);
-				if (parts[2].isEmpty()) throw new IOException("invalid tiny line (empty src method desc): "+line);
-				if (parts[3].isEmpty()) throw new IOException("invalid tiny line (empty src method name): "+line);
-				if (parts[4].isEmpty()) throw new IOException("invalid tiny line (empty method comment): "+line);
-
-				mappingAcceptor.acceptMethodComment(parts[1], parts[3], parts[2], unescape(parts[4]));*/
-				break;
-			case "MTH-ARG":
-			case "MTH-VAR":
-				if (parts.length != 6) throw new IOException("invalid tiny line (missing/extra columns): "+line);
-				if (parts[1].isEmpty()) throw new IOException("invalid tiny line (empty src class): "+line);
-				if (parts[2].isEmpty()) throw new IOException("invalid tiny line (empty src method desc): "+line);
-				if (parts[3].isEmpty()) throw new IOException("invalid tiny line (empty src method name): "+line);
-				if (parts[4].isEmpty()) throw new IOException("invalid tiny line (empty method arg/var index): "+line);
-				if (parts[5].isEmpty()) throw new IOException("invalid tiny line (empty dst method arg/var name): "+line);
-
-				if (parts[0].equals("MTH-ARG")) {
-					mappingAcceptor.acceptMethodArg(parts[1], parts[3], parts[2], Integer.parseInt(parts[4]), -1, parts[5]);
+			int parts = line.columns();
+			if (parts < 3) throw new IOException("invalid tiny line (missing columns): "+line);
+
+			if (line.equals(0, "CLASS")) {
+				if (parts != 3) throw new IOException("invalid tiny line (extra columns): "+line);
+				if (line.isEmpty(1)) throw new IOException("invalid tiny line (empty src class): "+line);
+				if (line.isEmpty(2)) throw new IOException("invalid tiny line (empty dst class): "+line);
+
+				mappingAcceptor.acceptClass(line.column(1), line.column(2));
+			} else if (line.equals(0, "CLS-CMT")) {
+				/*if (parts != 3) throw new IOException("invalid tiny line (extra columns): "+line);
+				if (line.isEmpty(1)) throw new IOException("invalid tiny line (empty src class): "+line);
+				if (line.isEmpty(2)) throw new IOException("invalid tiny line (empty class comment): "+line);
+
+				mappingAcceptor.acceptClassComment(line.column(1), unescape(line.column(2)));*/
+			} else if (line.equals(0, "METHOD")) {
+				if (parts != 5) throw new IOException("invalid tiny line (missing/extra columns): "+line);
+				if (line.isEmpty(1)) throw new IOException("invalid tiny line (empty src class): "+line);
+				if (line.isEmpty(2)) throw new IOException("invalid tiny line (empty src method desc): "+line);
+				if (line.isEmpty(3)) throw new IOException("invalid tiny line (empty src method name): "+line);
+				if (line.isEmpty(4)) throw new IOException("invalid tiny line (empty dst method name): "+line);
+
+				mappingAcceptor.acceptMethod(line.column(1), line.column(3), line.column(2), null, line.column(4), null);
+			} else if (line.equals(0, "MTH-CMT")) {
+				/*if (parts != 5) throw new IOException("invalid tiny line (missing/extra columns): "+line);
+				if (line.isEmpty(1)) throw new IOException("invalid tiny line (empty src class): "+line);
+				if (line.isEmpty(2)) throw new IOException("invalid tiny line (empty src method desc): "+line);
+				if (line.isEmpty(3)) throw new IOException("invalid tiny line (empty src method name): "+line);
+				if (line.isEmpty(4)) throw new IOException("invalid tiny line (empty method comment): "+line);
+
+				mappingAcceptor.acceptMethodComment(line.column(1), line.column(3), line.column(2), unescape(line.column(4)));*/
+			} else if (line.equals(0, "MTH-ARG") || line.equals(0, "MTH-VAR")) {
+				if (parts != 6) throw new IOException("invalid tiny line (missing/extra columns): "+line);
+				if (line.isEmpty(1)) throw new IOException("invalid tiny line (empty src class): "+line);
+				if (line.isEmpty(2)) throw new IOException("invalid tiny line (empty src method desc): "+line);
+				if (line.isEmpty(3)) throw new IOException("invalid tiny line (empty src method name): "+line);
+				if (line.isEmpty(4)) throw new IOException("invalid tiny line (empty method arg/var index): "+line);
+				if (line.isEmpty(5)) throw new IOException("invalid tiny line (empty dst method arg/var name): "+line);
+
+				if (line.equals(0, "MTH-ARG")) {
+					mappingAcceptor.acceptMethodArg(line.column(1), line.column(3), line.column(2), line.columnInt(4), -1, line.column(5));
 				} else {
-					mappingAcceptor.acceptMethodVar(parts[1], parts[3], parts[2], Integer.parseInt(parts[4]), -1, parts[5]);
+					mappingAcceptor.acceptMethodVar(line.column(1), line.column(3), line.column(2), line.columnInt(4), -1, line.column(5));
 				}
-
-				break;
-			case "FIELD":
-				if (parts.length != 5) throw new IOException("invalid tiny line (missing/extra columns): "+line);
-				if (parts[1].isEmpty()) throw new IOException("invalid tiny line (empty src class): "+line);
-				if (parts[2].isEmpty()) throw new IOException("invalid tiny line (empty src field desc): "+line);
-				if (parts[3].isEmpty()) throw new IOException("invalid tiny line (empty src field name): "+line);
-				if (parts[4].isEmpty()) throw new IOException("invalid tiny line (empty dst field name): "+line);
-
-				mappingAcceptor.acceptField(parts[1], parts[3], parts[2], null, parts[4], null);
-				break;
-			case "FLD-CMT":
-				/*if (parts.length != 5) throw new IOException("invalid tiny line (missing/extra columns): "+line);
-				if (parts[1].isEmpty()) throw new IOException("invalid tiny line (empty src class): "+line);
-				if (parts[2].isEmpty()) throw new IOException("invalid tiny line (empty src field desc): "+line);
-				if (parts[3].isEmpty()) throw new IOException("invalid tiny line (empty src field name): "+line);
-				if (parts[4].isEmpty()) throw new IOException("invalid tiny line (empty field comment): "+line);
-
-				mappingAcceptor.acceptFieldComment(parts[1], parts[3], parts[2], unescape(parts[4]));*/
-				break;
-			default:
+			} else if (line.equals(0, "FIELD")) {
+				if (parts != 5) throw new IOException("invalid tiny line (missing/extra columns): "+line);
+				if (line.isEmpty(1)) throw new IOException("invalid tiny line (empty src class): "+line);
+				if (line.isEmpty(2)) throw new IOException("invalid tiny line (empty src field desc): "+line);
+				if (line.isEmpty(3)) throw new IOException("invalid tiny line (empty src field name): "+line);
+				if (line.isEmpty(4)) throw new IOException("invalid tiny line (empty dst field name): "+line);
+
+				mappingAcceptor.acceptField(line.column(1), line.column(3), line.column(2), null, line.column(4), null);
+			} else if (line.equals(0, "FLD-CMT")) {
+				/*if (parts != 5) throw new IOException("invalid tiny line (missing/extra columns): "+line);
+				if (line.isEmpty(1)) throw new IOException("invalid tiny line (empty src class): "+line);
+				if (line.isEmpty(2)) throw new IOException("invalid tiny line (empty src field desc): "+line);
+				if (line.isEmpty(3)) throw new IOException("invalid tiny line (empty src field name): "+line);
+				if (line.isEmpty(4)) throw new IOException("invalid tiny line (empty field comment): "+line);
+
+				mappingAcceptor.acceptFieldComment(line.column(1), line.column(3), line.column(2), unescape(line.column(4)));*/
+			} else {
 				throw new IOException("invalid tiny line (unknown type): "+line);
 			}
 		}
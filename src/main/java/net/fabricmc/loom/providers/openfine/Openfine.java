@@ -10,17 +10,11 @@ import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
-import java.nio.file.FileSystem;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
-import java.nio.file.attribute.BasicFileAttributeView;
-import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
 
 import org.apache.commons.io.FilenameUtils;
 
@@ -28,9 +22,11 @@ import org.gradle.api.InvalidUserDataException;
 import org.gradle.api.logging.Logger;
 
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Iterators;
 import com.google.common.collect.Sets;
 
+import net.fabricmc.loom.providers.MappingsCache;
+import net.fabricmc.loom.util.RawZipFile;
+import net.fabricmc.loom.util.RawZipWriter;
 import net.fabricmc.mappings.EntryTriple;
 import net.fabricmc.mappings.FieldEntry;
 import net.fabricmc.mappings.MappingsProvider;
@@ -83,54 +79,43 @@ public class Openfine {
 	private static void merge(Logger logger, File client, File optifine, File server, File to) throws IOException {
 		logger.info("Merging OptiFine into " + to);
 
-		Set<String> mcEntries, optifineEntries, intersection;
-		try (JarFile mcJar = new JarFile(client); JarFile optifineJar = new JarFile(optifine)) {
+		try (RawZipFile mcJar = new RawZipFile(client.toPath());
+				RawZipFile optifineJar = new RawZipFile(optifine.toPath());
+				FileSystemDelegate serverFS = StitchUtil.getJarFileSystem(server, false);
+				RawZipWriter output = new RawZipWriter(to.toPath())) {
 			//Comparison on ZipEntries is poorly defined so we'll use the entry names for equality
-			mcEntries = ImmutableSet.copyOf(Iterators.transform(Iterators.forEnumeration(mcJar.entries()), JarEntry::getName));
-			optifineEntries = ImmutableSet.copyOf(Iterators.transform(Iterators.forEnumeration(optifineJar.entries()), JarEntry::getName));
+			Set<String> mcEntries = mcJar.entries().stream().map(entry -> entry.name).collect(ImmutableSet.toImmutableSet());
+			Set<String> optifineEntries = optifineJar.entries().stream().map(entry -> entry.name).collect(ImmutableSet.toImmutableSet());
 
+			Set<String> intersection;
 			if (mcEntries.size() > optifineEntries.size()) {
 				intersection = Sets.intersection(optifineEntries, mcEntries);
 			} else {
 				intersection = Sets.intersection(mcEntries, optifineEntries);
 			}
-		}
 
-		try (FileSystemDelegate mcFS = StitchUtil.getJarFileSystem(client, false);
-				FileSystemDelegate ofFS = StitchUtil.getJarFileSystem(optifine, false);
-				FileSystemDelegate serverFS = StitchUtil.getJarFileSystem(server, false);
-				FileSystemDelegate outputFS = StitchUtil.getJarFileSystem(to, true)) {
+			//Anything which is copied straight over doesn't need decompressing and compressing again
 			for (String entry : Sets.difference(mcEntries, optifineEntries)) {
-				copy(mcFS.get(), outputFS.get(), entry);
+				output.copy(mcJar, mcJar.getEntry(entry));
 			}
 
 			for (String entry : Sets.difference(optifineEntries, mcEntries)) {
-				copy(ofFS.get(), outputFS.get(), entry);
+				output.copy(optifineJar, optifineJar.getEntry(entry));
 			}
 
 			for (String entry : intersection) {
 				if (entry.endsWith(".class")) {
-					Path pathRawIn = mcFS.get().getPath(entry);
-					Path pathPatchedIn = ofFS.get().getPath(entry);
-
-					Path pathOut = outputFS.get().getPath(entry);
-			        if (pathOut.getParent() != null) {
-			            Files.createDirectories(pathOut.getParent());
-			        }
-
 			        Path pathStichFix = serverFS.get().getPath(entry);
 			        byte[] stitchFix = Files.isReadable(pathStichFix) ? Files.readAllBytes(pathStichFix) : null;
 
 			        logger.info("Reconstructing " + entry);
-			        byte[] data = ClassReconstructor.reconstruct(Files.readAllBytes(pathRawIn), Files.readAllBytes(pathPatchedIn), stitchFix);
+			        byte[] data = ClassReconstructor.reconstruct(mcJar.read(mcJar.getEntry(entry)), optifineJar.read(optifineJar.getEntry(entry)), stitchFix);
 
-			        //BasicFileAttributes touchTime = Files.readAttributes(pathIn, BasicFileAttributes.class);
-			        Files.write(pathOut, data, StandardOpenOption.CREATE_NEW);
-			        //Files.getFileAttributeView(pathIn, BasicFileAttributeView.class).setTimes(touchTime.lastModifiedTime(), touchTime.lastAccessTime(), touchTime.creationTime());
+			        output.write(entry, data);
 				} else if (entry.startsWith("META-INF/")) {
-					copy(mcFS.get(), outputFS.get(), entry);
+					output.copy(mcJar, mcJar.getEntry(entry));
 				} else {
-					copy(ofFS.get(), outputFS.get(), entry);
+					output.copy(optifineJar, optifineJar.getEntry(entry));
 				}
 			}
 		} catch (IllegalStateException e) {
@@ -140,19 +125,6 @@ public class Openfine {
 		}
 	}
 
-	private static void copy(FileSystem fsIn, FileSystem fsOut, String entry) throws IOException {
-		Path pathIn = fsIn.getPath(entry);
-
-		Path pathOut = fsOut.getPath(entry);
-        if (pathOut.getParent() != null) {
-            Files.createDirectories(pathOut.getParent());
-        }
-
-        BasicFileAttributes touchTime = Files.readAttributes(pathIn, BasicFileAttributes.class);
-        Files.copy(pathIn, pathOut);
-        Files.getFileAttributeView(pathIn, BasicFileAttributeView.class).setTimes(touchTime.lastModifiedTime(), touchTime.lastAccessTime(), touchTime.creationTime());
-	}
-
 	public static void applyBonusMappings(File to) throws IOException {
 		List<FieldEntry> extra = new ArrayList<>();
 
@@ -186,5 +158,8 @@ public class Openfine {
 				writer.write(String.format("FIELD\t%s\t%s\t%s\t%s\t%s\n", obf.getOwner(), obf.getDesc(), obf.getName(), field.get("named").getName(), field.get("intermediary").getName()));
 			}
 		}
+
+		//Anything which loaded the mappings before now is missing the bonus fields
+		MappingsCache.INSTANCE.forget(to.toPath());
 	}
 }
\ No newline at end of file
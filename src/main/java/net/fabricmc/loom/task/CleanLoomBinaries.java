@@ -36,5 +36,7 @@ public class CleanLoomBinaries extends AbstractLoomTask {
         extension.getMinecraftProvider().getMergedJar().delete();
         extension.getMinecraftMappedProvider().getIntermediaryJar().delete();
         extension.getMinecraftMappedProvider().getMappedJar().delete();
+        extension.getMinecraftMappedProvider().getUntransformedIntermediaryJar().delete();
+        extension.getMinecraftMappedProvider().getUntransformedMappedJar().delete();
     }
 }
@@ -40,6 +40,8 @@ public class CleanLoomMappings extends AbstractLoomTask {
         extension.getMappingsProvider().clearFiles();
         extension.getMinecraftMappedProvider().getIntermediaryJar().delete();
         extension.getMinecraftMappedProvider().getMappedJar().delete();
+        extension.getMinecraftMappedProvider().getUntransformedIntermediaryJar().delete();
+        extension.getMinecraftMappedProvider().getUntransformedMappedJar().delete();
         try {
             Files.walkFileTree(extension.getRootProjectBuildCache().toPath(), new DeletingFileVisitor());
         } catch (IOException e) {
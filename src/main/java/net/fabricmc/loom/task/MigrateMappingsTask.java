@@ -25,6 +25,7 @@
 package net.fabricmc.loom.task;
 
 import net.fabricmc.loom.LoomGradleExtension;
+import net.fabricmc.loom.providers.MappingsCache;
 import net.fabricmc.loom.util.Constants;
 import net.fabricmc.loom.util.Version;
 import net.fabricmc.mappings.*;
@@ -93,8 +94,13 @@ public class MigrateMappingsTask extends AbstractLoomTask {
         Mappings sourceMappings = extension.getMappingsProvider().getMappings();
         Mappings targetMappings;
 
-        try (FileInputStream stream = new FileInputStream(mappingsFile)) {
-            targetMappings = net.fabricmc.mappings.MappingsProvider.readTinyMappings(stream, false);
+        if (properties.containsKey("targetMappingsFile")) {
+            //Could be anywhere, so it is parsed directly rather than a binary copy being left next to it
+            try (FileInputStream stream = new FileInputStream(mappingsFile)) {
+                targetMappings = net.fabricmc.mappings.MappingsProvider.readTinyMappings(stream, false);
+            }
+        } else {
+            targetMappings = MappingsCache.INSTANCE.get(mappingsFile.toPath());
         }
 
         project.getLogger().lifecycle(":joining mappings");
@@ -27,18 +27,29 @@ package net.fabricmc.loom.task;
 import net.fabricmc.loom.LoomGradleExtension;
 import net.fabricmc.loom.providers.MappingsProvider;
 import net.fabricmc.loom.util.AccessTransformerHelper;
+import net.fabricmc.loom.util.ClassRemapCache;
+import net.fabricmc.loom.util.ClasspathIndex;
+import net.fabricmc.loom.util.JarMetadata;
 import net.fabricmc.loom.util.MixinRefmapHelper;
 import net.fabricmc.loom.util.NestedJars;
 import net.fabricmc.loom.util.TinyRemapperMappingsHelper;
-import net.fabricmc.tinyremapper.OutputConsumerPath;
+import net.fabricmc.loom.util.TransformingOutputConsumer;
 import net.fabricmc.tinyremapper.TinyRemapper;
 import net.fabricmc.tinyremapper.TinyUtils;
 
 import org.gradle.api.Project;
 import org.gradle.api.Task;
+import org.gradle.api.file.FileCollection;
 import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.CompileClasspath;
 import org.gradle.api.tasks.Input;
 import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
 import org.gradle.api.tasks.TaskAction;
 import org.gradle.jvm.tasks.Jar;
 
@@ -47,25 +58,35 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.LinkedHashSet;
 import java.util.Set;
+import java.util.function.BooleanSupplier;
 
+@CacheableTask
 public class RemapJarTask extends Jar {
 	private final RegularFileProperty input = getProject().getLayout().fileProperty();
 	private boolean addNestedDependencies;
 	@Input
 	public boolean includeAT = true;
+	/** Whether to only remap the classes which have changed since the last time the jar was remapped */
+	@Internal
+	public boolean incremental = false;
 
 	@TaskAction
 	public void doTask() throws Throwable {
 		Path input = getInput().getAsFile().get().toPath();
 		Path output = getArchivePath().toPath();
 
-		remap(this, input, output, addNestedDependencies, includeAT);
+		remap(this, input, output, addNestedDependencies, includeAT, incremental);
 		getProject().getExtensions().getByType(LoomGradleExtension.class).addUnmappedMod(input);
 	}
 
 	public static void remap(Task task, Path input, Path output, boolean addNestedDependencies, boolean skipATs) throws IOException {
+		remap(task, input, output, addNestedDependencies, skipATs, false);
+	}
+
+	public static void remap(Task task, Path input, Path output, boolean addNestedDependencies, boolean skipATs, boolean incremental) throws IOException {
 		if (!Files.exists(input)) {
 			throw new FileNotFoundException(input.toString());
 		}
@@ -100,16 +121,51 @@ public class RemapJarTask extends Jar {
 		}
 		project.getLogger().debug(rc.toString());
 
+		Path[] classpathSkeletons = ClasspathIndex.skeletons(project, classpath);
+		ClassRemapCache cache;
+		if (incremental) {
+			String fingerprint = ClassRemapCache.fingerprint(Arrays.asList(mappingsProvider.MAPPINGS_TINY, mixinMapFile), classpathSkeletons);
+			cache = new ClassRemapCache(new File(task.getTemporaryDir(), "remapped_classes").toPath(), fingerprint, input);
+			project.getLogger().info("Remapping " + cache.staleCount() + " of " + cache.size() + " classes");
+		} else {
+			cache = null;
+		}
+
 		TinyRemapper remapper = remapperBuilder.build();
 
-		try (OutputConsumerPath outputConsumer = new OutputConsumerPath(output)) {
-			outputConsumer.addNonClassFiles(input);
-			remapper.readClassPath(classpath);
-			remapper.readInputs(input);
-			remapper.apply(outputConsumer);
+		BooleanSupplier refmapped;
+		try (TransformingOutputConsumer outputConsumer = new TransformingOutputConsumer(output)) {
+			remapper.readClassPath(classpathSkeletons);
+
+			if (cache == null) {
+				remapper.readInputs(input);
+				remapper.apply(outputConsumer);
+			} else {
+				//The classes which haven't changed are still needed to know the hierarchy of those which have
+				Path changed = new File(task.getTemporaryDir(), "changed_classes.jar").toPath();
+				Path unchanged = new File(task.getTemporaryDir(), "unchanged_classes.jar").toPath();
+				cache.writeClasses(changed, true);
+				cache.writeClasses(unchanged, false);
+
+				remapper.readClassPath(unchanged);
+				remapper.readInputs(changed);
+				remapper.apply(cache.caching(remapper.getRemapper()::map, outputConsumer));
+				cache.writeCached(outputConsumer);
+			}
+
+			//Everything else is done as the jar is written, rather than rewriting the jar again for each change afterwards
 			if (!skipATs && AccessTransformerHelper.obfATs(extension, task, remapper, outputConsumer)) {
 				project.getLogger().info("Remapped access transformer");
 			}
+
+			refmapped = MixinRefmapHelper.addRefmapName(extension.getRefmapName(), extension.getMixinJsonVersion(), JarMetadata.of(project, input.toFile()).getMixinConfigs(), outputConsumer);
+
+			if (addNestedDependencies && NestedJars.addNestedJars(project, outputConsumer)) {
+				project.getLogger().debug("Added nested jar paths to mod json");
+			}
+
+			//Copied last so anything added above replaces what the input has
+			outputConsumer.addNonClassFiles(input);
 		} catch (Exception e) {
 			throw new RuntimeException("Failed to remap " + input + " to " + output, e);
 		} finally {
@@ -120,20 +176,71 @@ public class RemapJarTask extends Jar {
 			throw new RuntimeException("Failed to remap " + input + " to " + output + " - file missing!");
 		}
 
-		if (MixinRefmapHelper.addRefmapName(extension.getRefmapName(), extension.getMixinJsonVersion(), output)) {
-			project.getLogger().debug("Transformed mixin reference maps in output JAR!");
+		if (cache != null) {
+			cache.prune();
 		}
 
-		if (addNestedDependencies && NestedJars.addNestedJars(project, output)) {
-			project.getLogger().debug("Added nested jar paths to mod json");
+		if (refmapped.getAsBoolean()) {
+			project.getLogger().debug("Transformed mixin reference maps in output JAR!");
 		}
 	}
 
 	@InputFile
+	@PathSensitive(PathSensitivity.NONE)
 	public RegularFileProperty getInput() {
 		return input;
 	}
 
+	private LoomGradleExtension getLoomExtension() {
+		return getProject().getExtensions().getByType(LoomGradleExtension.class);
+	}
+
+	@InputFile
+	@PathSensitive(PathSensitivity.NONE)
+	public File getMappings() {
+		return getLoomExtension().getMappingsProvider().MAPPINGS_TINY;
+	}
+
+	@Optional
+	@InputFile
+	@PathSensitive(PathSensitivity.NONE)
+	public File getMixinMappings() {
+		File mixinMappings = getLoomExtension().getMappingsProvider().MAPPINGS_MIXIN_EXPORT;
+		return mixinMappings.exists() ? mixinMappings : null;
+	}
+
+	/** The remapper only reads the hierarchy and members of the classpath, so only the ABI of it matters */
+	@CompileClasspath
+	public FileCollection getRemapClasspath() {
+		return getProject().getConfigurations().getByName("compileClasspath");
+	}
+
+	@Optional
+	@InputFile
+	@PathSensitive(PathSensitivity.NONE)
+	public File getAccessTransformer() {
+		LoomGradleExtension extension = getLoomExtension();
+		return extension.hasAT() ? extension.getAT() : null;
+	}
+
+	@Input
+	public String getRefmapName() {
+		return getLoomExtension().getRefmapName();
+	}
+
+	@Optional
+	@Input
+	public String getMixinJsonVersion() {
+		return getLoomExtension().getMixinJsonVersion();
+	}
+
+	/** The jars which will be nested, which keep their names inside the remapped jar */
+	@InputFiles
+	@PathSensitive(PathSensitivity.NAME_ONLY)
+	public FileCollection getNestedJars() {
+		return addNestedDependencies ? NestedJars.getNestableJars(getProject()) : getProject().files();
+	}
+
 	@Input
 	public boolean isAddNestedDependencies() {
 		return addNestedDependencies;
@@ -27,7 +27,6 @@ package net.fabricmc.loom.task;
 import net.fabricmc.loom.task.fernflower.FernFlowerTask;
 import net.fabricmc.loom.util.LineNumberRemapper;
 import net.fabricmc.loom.util.progress.ProgressLogger;
-import net.fabricmc.stitch.util.StitchUtil;
 import org.gradle.api.Project;
 import org.gradle.api.tasks.InputFile;
 import org.gradle.api.tasks.OutputFile;
@@ -52,9 +51,8 @@ public class RemapLineNumbersTask extends AbstractLoomTask {
         ProgressLogger progressLogger = ProgressLogger.getProgressFactory(project, FernFlowerTask.class.getName());
         progressLogger.start("Adjusting line numbers", "linemap");
 
-        try (StitchUtil.FileSystemDelegate inFs = StitchUtil.getJarFileSystem(getInput(), true);
-             StitchUtil.FileSystemDelegate outFs = StitchUtil.getJarFileSystem(getOutput(), true)) {
-            remapper.process(progressLogger, inFs.get().getPath("/"), outFs.get().getPath("/"));
+        try {
+            remapper.process(progressLogger, getInput().toPath(), getOutput().toPath());
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
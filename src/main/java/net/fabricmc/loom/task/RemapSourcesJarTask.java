@@ -24,26 +24,72 @@
 
 package net.fabricmc.loom.task;
 
+import net.fabricmc.loom.LoomGradleExtension;
+import net.fabricmc.loom.providers.MinecraftMappedProvider;
+import net.fabricmc.loom.util.Constants;
 import net.fabricmc.loom.util.SourceRemapper;
+import org.gradle.api.Project;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.CompileClasspath;
 import org.gradle.api.tasks.Input;
 import org.gradle.api.tasks.InputFile;
 import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
 import org.gradle.api.tasks.TaskAction;
+import org.gradle.api.tasks.bundling.AbstractArchiveTask;
 
 import java.io.File;
 
+@CacheableTask
 public class RemapSourcesJarTask extends AbstractLoomTask {
 	private Object input;
 	private Object output;
 	private String direction = "intermediary";
 
+	public RemapSourcesJarTask() {
+		//Without its own output the sources jar is remapped in place, which can't be cached as it overlaps the jar it came from
+		getOutputs().doNotCacheIf("Remapping in place", task -> output == null);
+	}
+
 	@TaskAction
 	public void remap() throws Exception {
 		SourceRemapper.remapSources(getProject(), getInput(), getOutput(), direction.equals("named"));
 	}
 
+	/**
+	 * Everything {@link SourceRemapper} puts on the classpath, of which only the ABI is needed to resolve the sources
+	 *
+	 * <p>The unmapped mods are taken from the tasks which make them rather than {@link LoomGradleExtension#getUnmappedMods()},
+	 * as that grows as those tasks run, so would change depending on which had run before this
+	 */
+	@CompileClasspath
+	public FileCollection getRemapClasspath() {
+		Project project = getProject();
+		LoomGradleExtension extension = project.getExtensions().getByType(LoomGradleExtension.class);
+		MinecraftMappedProvider mappedProvider = extension.getMinecraftMappedProvider();
+
+		ConfigurableFileCollection classpath = project.files(project.getConfigurations().getByName(Constants.MINECRAFT_DEPENDENCIES));
+		if (!"named".equals(direction)) {
+			classpath.from(project.getConfigurations().getByName("compileClasspath"));
+		}
+		classpath.from(((AbstractArchiveTask) project.getTasks().getByName("jar")).getArchivePath());
+		for (RemapJarTask task : project.getTasks().withType(RemapJarTask.class)) {
+			if (task.getInput().isPresent()) classpath.from(task.getInput().getAsFile().get());
+		}
+		for (RemappingJar task : project.getTasks().withType(RemappingJar.class)) {
+			classpath.from(task.getUnmappedJar());
+		}
+		classpath.from(mappedProvider.MINECRAFT_MAPPED_JAR, mappedProvider.MINECRAFT_INTERMEDIARY_JAR);
+
+		return classpath;
+	}
+
 	//@formatter:off
-	@InputFile public File getInput() { return getProject().file(input); }
+	@InputFile @PathSensitive(PathSensitivity.NONE) public File getInput() { return getProject().file(input); }
+	@InputFile @PathSensitive(PathSensitivity.NONE) public File getMappings() { return getProject().getExtensions().getByType(LoomGradleExtension.class).getMappingsProvider().MAPPINGS_TINY; }
 	@OutputFile public File getOutput() { return getProject().file(output == null ? input : output); }
 	@Input public String getTargetNamespace() { return direction; }
 	public void setInput(Object input) { this.input = input; }
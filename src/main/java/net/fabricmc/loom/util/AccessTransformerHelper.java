@@ -25,44 +25,39 @@ package net.fabricmc.loom.util;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.nio.charset.StandardCharsets;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
 import java.util.stream.Collectors;
-import java.util.zip.ZipEntry;
 
 import org.gradle.api.Task;
 import org.gradle.api.tasks.AbstractCopyTask;
 
 import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.commons.Remapper;
-import org.objectweb.asm.tree.ClassNode;
-import org.objectweb.asm.tree.InnerClassNode;
-import org.objectweb.asm.tree.MethodNode;
-
-import org.zeroturnaround.zip.ZipUtil;
-import org.zeroturnaround.zip.transform.ByteArrayZipEntryTransformer;
-import org.zeroturnaround.zip.transform.StreamZipEntryTransformer;
-import org.zeroturnaround.zip.transform.ZipEntryTransformerEntry;
 
 import net.fabricmc.loom.LoomGradleExtension;
 import net.fabricmc.stitch.util.Pair;
-import net.fabricmc.tinyremapper.OutputConsumerPath;
 import net.fabricmc.tinyremapper.TinyRemapper;
 
 public class AccessTransformerHelper {
@@ -89,7 +84,7 @@ public class AccessTransformerHelper {
 		}
 	}
 
-	public static boolean obfATs(LoomGradleExtension extension, Task task, TinyRemapper tiny, OutputConsumerPath consumer) throws IOException {
+	public static boolean obfATs(LoomGradleExtension extension, Task task, TinyRemapper tiny, TransformingOutputConsumer consumer) throws IOException {
 		if (extension.hasAT()) {
 			File at = new File(task.getTemporaryDir(), MAGIC_AT_NAME);
 
@@ -107,15 +102,19 @@ public class AccessTransformerHelper {
         }
     }
 
-	public static boolean deobfATs(TinyRemapper tiny, File jar) {
-		return ZipUtil.transformEntry(jar, new ZipEntryTransformerEntry(MAGIC_AT_NAME, new StreamZipEntryTransformer() {
-			@Override
-			protected void transform(ZipEntry zipEntry, InputStream in, OutputStream out) throws IOException {
-				try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
-					readATs(new InputStreamReader(in, StandardCharsets.UTF_8), writer, tiny.getRemapper());
-				}
+	/** Remap any access transformer the given consumer writes, returning whether one was once the consumer is finished */
+	public static BooleanSupplier deobfATs(TinyRemapper tiny, TransformingOutputConsumer consumer) {
+		consumer.addTransformer(MAGIC_AT_NAME, data -> {
+			ByteArrayOutputStream out = new ByteArrayOutputStream(data.length);
+
+			try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+				readATs(new InputStreamReader(new ByteArrayInputStream(data), StandardCharsets.UTF_8), writer, tiny.getRemapper());
 			}
-		}));
+
+			return out.toByteArray();
+		});
+
+		return () -> consumer.didTransform(MAGIC_AT_NAME);
 	}
 
 	private static void readATs(Reader from, BufferedWriter to, Remapper remapper) throws IOException {
@@ -161,7 +160,7 @@ public class AccessTransformerHelper {
 		}
     }
 
-    private static class ZipAT extends ByteArrayZipEntryTransformer {
+    private static class ZipAT {
     	/** The class name of the type we're aiming to transform */
     	public final String className;
     	/** A set of all methods we're aiming to transform in {@link #className} */
@@ -170,7 +169,7 @@ public class AccessTransformerHelper {
     	private final boolean selfAT;
     	/** A set of all inner classes that need to be transformed */
     	private final Set<String> innerTransforms = new HashSet<>();
-    	/** Whether we have been used (ie {@link #transform(ZipEntry, byte[])} has been called) */
+    	/** Whether we have been used (ie {@link #transform(byte[])} has been called) */
     	boolean hasTransformed = false;
 
     	ZipAT(Entry<String, Set<String>> entry, String wildcard) {
@@ -195,47 +194,47 @@ public class AccessTransformerHelper {
     		innerTransforms.addAll(name);
     	}
 
-    	@Override
-    	protected boolean preserveTimestamps() {
-    		return true;
+    	boolean sameAs(ZipAT other) {
+    		return selfAT == other.selfAT && transforms.equals(other.transforms) && innerTransforms.equals(other.innerTransforms);
     	}
 
-		@Override
-		protected byte[] transform(ZipEntry zipEntry, byte[] data) throws IOException {
+		byte[] transform(byte[] data) {
 			if (hasTransformed) throw new IllegalStateException("Transformer for " + className + " was attempted to be reused");
 			hasTransformed = true; //We only expect to be run once (although aren't technically limited to prevent it)
 
-			ClassNode clazz = new ClassNode();
-	        ClassReader reader = new ClassReader(data);
-	        reader.accept(clazz, 0);
+			//Only access flags change, so the writer can copy everything else (including the code of every method) straight from the reader
+			ClassReader reader = new ClassReader(data);
+			ClassWriter writer = new ClassWriter(reader, 0);
+			Set<String> missing = new HashSet<>(transforms);
+
+			reader.accept(new ClassVisitor(Opcodes.ASM7, writer) {
+				@Override
+				public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+					super.visit(version, selfAT ? flipBits(access) : access, name, signature, superName, interfaces);
+				}
+
+				@Override
+				public void visitInnerClass(String name, String outerName, String innerName, int access) {
+					super.visitInnerClass(name, outerName, innerName, innerTransforms.contains(name) ? flipBits(access) : access);
+				}
 
-	        if (selfAT) clazz.access = flipBits(clazz.access);
-	        if (!innerTransforms.isEmpty()) {
-				for (InnerClassNode innerClass : clazz.innerClasses) {
-					if (innerTransforms.contains(innerClass.name)) {
-						innerClass.access = flipBits(innerClass.access);
+				@Override
+				public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+					if (missing.remove(name + descriptor)) {
+						access = flipBits(access);
+						//Technically speaking we should probably do INVOKESPECIAL -> INVOKEVIRTUAL for private -> public transforms
+						//But equally that's effort, so let's see how far we can get before it becomes an issue (from being lazy)
 					}
+
+					return super.visitMethod(access, name, descriptor, signature, exceptions);
 				}
+			}, 0);
+
+			if (!missing.isEmpty()) {//There's still more we never found, not so good that
+				throw new IllegalStateException("Ran through class " + reader.getClassName() + " but couldn't find " + missing);
 			}
 
-	        if (!transforms.isEmpty()) {
-	        	for (MethodNode method : clazz.methods) {
-	        		if (transforms.remove(method.name + method.desc)) {
-	        			method.access = flipBits(method.access);
-	        			//Technically speaking we should probably do INVOKESPECIAL -> INVOKEVIRTUAL for private -> public transforms
-	        			//But equally that's effort, so let's see how far we can get before it becomes an issue (from being lazy)
-	        			if (transforms.isEmpty()) break;
-	        		}
-	        	}
-	        }
-
-	        if (!transforms.isEmpty()) {//There's still more we never found, not so good that
-	        	throw new IllegalStateException("Ran through class " + clazz.name + " but couldn't find " + transforms);
-	        }
-
-	        ClassWriter writer = new ClassWriter(0);
-	        clazz.accept(writer);
-	        return writer.toByteArray();
+			return writer.toByteArray();
 		}
 
 		private static final int ACCESSES = ~(Opcodes.ACC_PUBLIC | Opcodes.ACC_PROTECTED | Opcodes.ACC_PRIVATE);
@@ -247,18 +246,42 @@ public class AccessTransformerHelper {
 		}
     }
 
-    public static class ZipEntryAT extends ZipEntryTransformerEntry {
+    public static class ZipEntryAT {
+    	private final String path;
+    	private final ZipAT transformer;
+
 		public ZipEntryAT(ZipAT transformer) {
-			super(transformer.className + ".class", transformer);
+			path = transformer.className + ".class";
+			this.transformer = transformer;
+		}
+
+		/** The path of the class in the jar this entry transforms */
+		public String getPath() {
+			return path;
 		}
 
 		/** Whether the transformer for this entry has been applied */
 		public boolean didTransform() {
-			return ((ZipAT) getTransformer()).hasTransformed;
+			return transformer.hasTransformed;
+		}
+
+		/** Whether this transformer would make the same changes as the given one */
+		public boolean transformsSameAs(ZipEntryAT other) {
+			return transformer.sameAs(other.transformer);
+		}
+
+		/** Apply the transformer for this entry to the given class */
+		public byte[] transform(byte[] data) {
+			return transformer.transform(data);
 		}
     }
 
-    public static ZipEntryAT[] makeZipATs(Set<String> classPool, Map<String, Set<String>> transforms, String wildcard) {
+    /**
+     * Make the transformers for the given access transforms, along with any needed for the classes nested with changed inner classes
+     *
+     * @param nestFinder Finds the given outer class and all the classes nested within it
+     */
+    public static ZipEntryAT[] makeZipATs(Function<String, Collection<String>> nestFinder, Map<String, Set<String>> transforms, String wildcard) {
     	Map<String, ZipAT> transformers = transforms.entrySet().stream().collect(Collectors.toMap(Entry::getKey, entry -> new ZipAT(entry, wildcard)));
 
     	Set<String> classChanges = transformers.entrySet().stream().filter(entry -> entry.getValue().changesOwnAccess()).map(Entry::getKey).collect(Collectors.toSet());
@@ -277,16 +300,14 @@ public class AccessTransformerHelper {
     			for (Entry<String, Set<String>> rootEntry : rootClasses.entrySet()) {
     				String rootClass = rootEntry.getKey();
 
-    				//Find "all" nested classes to update the access flags
-    				for (String pool : classPool) {
-    					if (pool.startsWith(rootClass)) {
-    						if (transformers.containsKey(pool)) {
-    							transformers.get(pool).addInnerTransform(rootEntry.getValue());
-    						} else {
-    							ZipAT z;
-    							transformers.put(pool, z = new ZipAT(pool, Collections.emptySet(), null));
-    							z.addInnerTransform(rootEntry.getValue());
-    						}
+    				//Find all nested classes to update the access flags
+    				for (String pool : nestFinder.apply(rootClass)) {
+    					if (transformers.containsKey(pool)) {
+    						transformers.get(pool).addInnerTransform(rootEntry.getValue());
+    					} else {
+    						ZipAT z;
+    						transformers.put(pool, z = new ZipAT(pool, Collections.emptySet(), null));
+    						z.addInnerTransform(rootEntry.getValue());
     					}
     				}
     			}
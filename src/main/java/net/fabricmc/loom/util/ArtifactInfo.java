@@ -24,7 +24,6 @@
 package net.fabricmc.loom.util;
 
 import java.io.File;
-import java.nio.charset.StandardCharsets;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
@@ -49,23 +48,20 @@ import org.gradle.api.artifacts.result.ComponentArtifactsResult;
 import org.gradle.api.artifacts.result.ResolvedArtifactResult;
 import org.gradle.jvm.JvmLibrary;
 import org.gradle.language.base.artifact.SourcesArtifact;
-import org.zeroturnaround.zip.ZipUtil;
 
 import com.google.common.collect.Iterables;
 import com.google.common.collect.ImmutableMap.Builder;
-import com.google.gson.Gson;
-import com.google.gson.JsonObject;
 
 public class ArtifactInfo {
 	/**
 	 * Process the artifacts for the given configuration into {@link ArtifactInfo}s
 	 *
 	 * @param configuration The configuration to resolve dependencies for
-	 * @param depHandler The dependency handler for a project, typically from {@link Project#getDependencies()}
+	 * @param project The project the configuration is from
 	 *
 	 * @return The artifacts for the given configuration as ArtifactInfos
 	 */
-	public static Set<ArtifactInfo> resolve(Configuration configuration, DependencyHandler depHandler) {
+	public static Set<ArtifactInfo> resolve(Configuration configuration, Project project) {
 		//We need to get all of the file based dependencies that aren't transitive, and shouldn't be applied over the top of each other
 		Builder<File, SelfResolvingDependency> builder = new Builder<>();
 		configuration.getIncoming().getDependencies().stream().filter(dependency -> dependency instanceof SelfResolvingDependency).map(SelfResolvingDependency.class::cast).forEach(dependency -> {
@@ -79,33 +75,35 @@ public class ArtifactInfo {
 		return Stream.concat(configuration.getResolvedConfiguration().getResolvedArtifacts().stream().filter(artifact -> !fileDependencies.containsKey(artifact.getFile())).map(artifact -> {
 			if (artifact.getId().getComponentIdentifier() instanceof ModuleComponentIdentifier) {
 				//It's a normal module dependency, keep it as an artifact so the transitives can carry over
-				return new ArtifactInfo((ModuleComponentIdentifier) artifact.getId().getComponentIdentifier(), artifact.getClassifier(), artifact.getFile(), depHandler);
+				return new ArtifactInfo((ModuleComponentIdentifier) artifact.getId().getComponentIdentifier(), artifact.getClassifier(), artifact.getFile(), project);
 			} else {
 				//If it's not a file nor a module identifier goodness knows what it is
 				throw new RuntimeException("Unable to handle " + artifact.getFile() + ", identified as " + artifact.getId().getComponentIdentifier());
 			}
-		}), fileDependencies.values().stream().distinct().map(dependency -> FileArtifactInfo.create(dependency, depHandler))).collect(Collectors.toSet());
+		}), fileDependencies.values().stream().distinct().map(dependency -> FileArtifactInfo.create(dependency, project))).collect(Collectors.toSet());
 	}
 
 
 	public final String group, name, version, classifier;
 	public final File artifact;
+	protected final Project project;
 	protected final DependencyHandler depHandler;
 	private ModuleComponentIdentifier identifier;
 
-	public ArtifactInfo(ModuleComponentIdentifier identifier, String classifier, File artifact, DependencyHandler depHandler) {
-		this(identifier.getGroup(), identifier.getModule(), identifier.getVersion(), classifier, artifact, depHandler);
+	public ArtifactInfo(ModuleComponentIdentifier identifier, String classifier, File artifact, Project project) {
+		this(identifier.getGroup(), identifier.getModule(), identifier.getVersion(), classifier, artifact, project);
 
 		this.identifier = identifier;
 	}
 
-	protected ArtifactInfo(String group, String name, String version, String classifier, File artifact, DependencyHandler depHandler) {
+	protected ArtifactInfo(String group, String name, String version, String classifier, File artifact, Project project) {
 		this.group = group;
 		this.name = name;
 		this.version = version;
 		this.classifier = classifier == null ? "" : ':' + classifier;
 		this.artifact = artifact;
-		this.depHandler = depHandler;
+		this.project = project;
+		depHandler = project.getDependencies();
 	}
 
 	public String notation() {
@@ -116,12 +114,12 @@ public class ArtifactInfo {
 		return artifact;
 	}
 
-	public static boolean isFabricMod(File file) {
-		return "jar".equals(FilenameUtils.getExtension(file.getName())) && ZipUtil.containsEntry(file, "fabric.mod.json");
+	public static boolean isFabricMod(Project project, File file) {
+		return "jar".equals(FilenameUtils.getExtension(file.getName())) && JarMetadata.of(project, file).isFabricMod();
 	}
 
 	public boolean isFabricMod() {
-		return isFabricMod(artifact);
+		return isFabricMod(project, artifact);
 	}
 
 	public Dependency asNonTransitiveDependency() {
@@ -154,7 +152,7 @@ public class ArtifactInfo {
 
 
 	public static class FileArtifactInfo extends ArtifactInfo {
-		public static ArtifactInfo create(SelfResolvingDependency dependency, DependencyHandler depHandler) {
+		public static ArtifactInfo create(SelfResolvingDependency dependency, Project project) {
 			Builder<String, File> builder = new Builder<>();
 
 			Set<File> files = dependency.resolve();
@@ -200,32 +198,32 @@ public class ArtifactInfo {
 			boolean isFabricMod;
 
 			File root = classifierToFile.get(""); //We've built the classifierToFile map, now to try find a name and version for our dependency
-			if (isFabricMod = isFabricMod(root)) {
+			if (isFabricMod = isFabricMod(project, root)) {
 				//It's a Fabric mod, see how much we can extract out
-				JsonObject json = new Gson().fromJson(new String(ZipUtil.unpackEntry(root, "fabric.mod.json"), StandardCharsets.UTF_8), JsonObject.class);
-				if (json == null || !json.has("id") || !json.has("version")) throw new IllegalArgumentException("Invalid Fabric mod jar: " + root + " (malformed json: " + json + ')');
+				JarMetadata metadata = JarMetadata.of(project, root);
+				if (metadata.getModId() == null || metadata.getModVersion() == null) throw new IllegalArgumentException("Invalid Fabric mod jar: " + root + " (missing id or version)");
 
-				if (json.has("name")) {//Go for the name field if it's got one
-					name = json.get("name").getAsString();
+				if (metadata.getModName() != null) {//Go for the name field if it's got one
+					name = metadata.getModName();
 				} else {
-					name = json.get("id").getAsString();
+					name = metadata.getModId();
 				}
-				version = json.get("version").getAsString();
+				version = metadata.getModVersion();
 			} else {
 				//Not a Fabric mod, just have to make something up
 				name = FilenameUtils.removeExtension(root.getName()).replace(" :", "-");
 				version = "1.0";
 			}
 
-			return new FileArtifactInfo(dependency, name, version, classifierToFile, isFabricMod, depHandler);
+			return new FileArtifactInfo(dependency, name, version, classifierToFile, isFabricMod, project);
 		}
 
 		protected final SelfResolvingDependency dependency;
 		protected final Map<String, File> classifierToFile;
 		protected final boolean isFabricMod;
 
-		public FileArtifactInfo(SelfResolvingDependency dependency, String name, String version, Map<String, File> artifacts, boolean isFabricMod, DependencyHandler depHandler) {
-			super("net.fabricmc.synthetic", name, version, null, artifacts.get(""), depHandler);
+		public FileArtifactInfo(SelfResolvingDependency dependency, String name, String version, Map<String, File> artifacts, boolean isFabricMod, Project project) {
+			super("net.fabricmc.synthetic", name, version, null, artifacts.get(""), project);
 
 			this.dependency = dependency;
 			classifierToFile = artifacts;
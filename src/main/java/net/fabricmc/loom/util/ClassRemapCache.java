@@ -0,0 +1,286 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016, 2017, 2018 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.BiConsumer;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * A cache of what each class in a jar was remapped to the last time it was remapped, so when the jar is remapped again only
+ * the classes which have changed (or could now remap differently from another class changing) need remapping.
+ *
+ * <p>Each class is cached by the hash of its contents, the hierarchies of every class in the jar it refers to and a
+ * fingerprint of everything outside the jar which is used to remap it. As which members are remapped depends on what
+ * their owner inherits, a change to the members or super types of any class means everything using it is remapped again.
+ */
+public class ClassRemapCache {
+	private static final int CONSTANT_CLASS = 7;
+
+	private final Path cache;
+	/** The class name and contents of each class in the input jar */
+	private final Map<String, byte[]> classes = new LinkedHashMap<>();
+	private final Map<String, String> keys = new HashMap<>();
+	private final Set<String> stale = new HashSet<>();
+
+	public ClassRemapCache(Path cache, String fingerprint, Path jar) throws IOException {
+		this.cache = cache;
+		Files.createDirectories(cache);
+
+		try (RawZipFile in = new RawZipFile(jar)) {
+			for (RawZipFile.Entry entry : in.entries()) {
+				if (entry.isDirectory() || !entry.name.endsWith(".class")) continue;
+
+				byte[] data = in.read(entry);
+				classes.put(new ClassReader(data).getClassName(), data);
+			}
+		}
+
+		Map<String, String> hierarchies = new HashMap<>();
+		for (Entry<String, byte[]> entry : classes.entrySet()) {
+			Hasher hasher = Hashing.sha256().newHasher();
+			hasher.putString(fingerprint, StandardCharsets.UTF_8);
+			hasher.putBytes(entry.getValue());
+
+			//Sorted so the key doesn't depend on the order of the constant pool
+			for (String used : referencedClasses(new ClassReader(entry.getValue()))) {
+				if (classes.containsKey(used)) {
+					hasher.putString(used, StandardCharsets.UTF_8).putString(hierarchy(used, hierarchies, new HashSet<>()), StandardCharsets.UTF_8);
+				}
+			}
+
+			String key = hasher.hash().toString();
+			keys.put(entry.getKey(), key);
+			if (Files.notExists(cacheFile(key))) stale.add(entry.getKey());
+		}
+	}
+
+	/** Make a fingerprint of the given mappings and classpath, along with whatever is doing the remapping */
+	public static String fingerprint(Iterable<File> mappings, Path... classpath) throws IOException {
+		Hasher hasher = Hashing.sha256().newHasher();
+		hasher.putString(RemapManifest.toolVersion(), StandardCharsets.UTF_8);
+
+		for (File file : mappings) {
+			hasher.putString(file.exists() ? RemapManifest.hash(file) : "missing", StandardCharsets.UTF_8);
+		}
+
+		for (Path entry : classpath) {
+			hasher.putString(entry.toString(), StandardCharsets.UTF_8);
+
+			//Jars are expected to be classpath skeletons, which are already named after their contents
+			if (Files.isDirectory(entry)) {
+				try (Stream<Path> files = Files.walk(entry)) {
+					files.sorted().forEachOrdered(file -> {
+						try {
+							BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+							hasher.putString(file.toString(), StandardCharsets.UTF_8).putLong(attributes.size()).putLong(attributes.lastModifiedTime().toMillis());
+						} catch (IOException e) {
+							throw new UncheckedIOException(e);
+						}
+					});
+				} catch (UncheckedIOException e) {
+					throw e.getCause();
+				}
+			}
+		}
+
+		return hasher.hash().toString();
+	}
+
+	private static Set<String> referencedClasses(ClassReader reader) {
+		Set<String> out = new TreeSet<>();
+		char[] buffer = new char[reader.getMaxStringLength()];
+
+		for (int i = 1, end = reader.getItemCount(); i < end; i++) {
+			int offset = reader.getItem(i);
+			if (offset <= 0 || reader.readByte(offset - 1) != CONSTANT_CLASS) continue;
+
+			String name = reader.readUTF8(offset, buffer);
+			if (name.charAt(0) == '[') {
+				Type element = Type.getType(name).getElementType();
+				if (element.getSort() != Type.OBJECT) continue;
+				name = element.getInternalName();
+			}
+
+			out.add(name);
+		}
+
+		return out;
+	}
+
+	/** A hash of the members and super types of the given class, along with those of any super types also in the jar */
+	private String hierarchy(String name, Map<String, String> hierarchies, Set<String> visiting) {
+		String existing = hierarchies.get(name);
+		if (existing != null) return existing;
+		if (!visiting.add(name)) return "circular"; //Not valid, but no reason to go round in circles over it
+
+		Hasher hasher = Hashing.sha256().newHasher();
+		ClassReader reader = new ClassReader(classes.get(name));
+		reader.accept(new ClassVisitor(Opcodes.ASM7) {
+			@Override
+			public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+				hasher.putInt(access).putString(String.valueOf(superName), StandardCharsets.UTF_8);
+
+				if (interfaces != null) {
+					for (String type : interfaces) {
+						hasher.putString(type, StandardCharsets.UTF_8);
+					}
+				}
+			}
+
+			@Override
+			public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+				hasher.putChar('F').putInt(access).putString(name, StandardCharsets.UTF_8).putString(descriptor, StandardCharsets.UTF_8);
+				return null;
+			}
+
+			@Override
+			public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+				hasher.putChar('M').putInt(access).putString(name, StandardCharsets.UTF_8).putString(descriptor, StandardCharsets.UTF_8);
+				return null;
+			}
+		}, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+
+		String superName = reader.getSuperName();
+		if (superName != null && classes.containsKey(superName)) {
+			hasher.putString(hierarchy(superName, hierarchies, visiting), StandardCharsets.UTF_8);
+		}
+		for (String type : reader.getInterfaces()) {
+			if (classes.containsKey(type)) {
+				hasher.putString(hierarchy(type, hierarchies, visiting), StandardCharsets.UTF_8);
+			}
+		}
+
+		String hierarchy = hasher.hash().toString();
+		hierarchies.put(name, hierarchy);
+		return hierarchy;
+	}
+
+	private Path cacheFile(String key) {
+		return cache.resolve(key + ".class");
+	}
+
+	public int size() {
+		return classes.size();
+	}
+
+	/** How many classes have to be remapped again */
+	public int staleCount() {
+		return stale.size();
+	}
+
+	/** Write either the classes which need remapping again, or those which don't, into the given jar */
+	public void writeClasses(Path jar, boolean needingRemap) throws IOException {
+		try (RawZipWriter out = new RawZipWriter(jar)) {
+			for (Entry<String, byte[]> entry : classes.entrySet()) {
+				if (stale.contains(entry.getKey()) == needingRemap) {
+					out.write(entry.getKey() + ".class", entry.getValue());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Wrap the given output to also cache any classes passed to it
+	 *
+	 * @param remapper Finds the remapped name of an input class, so the remapped classes can be matched to the input
+	 */
+	public BiConsumer<String, byte[]> caching(UnaryOperator<String> remapper, BiConsumer<String, byte[]> output) {
+		Map<String, String> remappedKeys = new HashMap<>();
+		for (String name : stale) {
+			remappedKeys.put(remapper.apply(name), keys.get(name));
+		}
+
+		return (name, data) -> {
+			String key = remappedKeys.get(name);
+			if (key == null) throw new IllegalStateException("Remapped " + name + " which wasn't expected to be");
+
+			try {
+				//Written somewhere else first so the cache never has half written classes
+				Path temp = Files.createTempFile(cache, key, ".tmp");
+				try {
+					Files.write(temp, data);
+					Files.move(temp, cacheFile(key), StandardCopyOption.REPLACE_EXISTING);
+				} finally {
+					Files.deleteIfExists(temp);
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException("Error caching " + name, e);
+			}
+
+			output.accept(name, data);
+		};
+	}
+
+	/** Pass every class which didn't need remapping again from the cache to the given output */
+	public void writeCached(BiConsumer<String, byte[]> output) throws IOException {
+		for (String name : classes.keySet()) {
+			if (stale.contains(name)) continue;
+
+			byte[] data = Files.readAllBytes(cacheFile(keys.get(name)));
+			output.accept(new ClassReader(data).getClassName(), data);
+		}
+	}
+
+	/** Remove everything from the cache which wasn't used for the current jar */
+	public void prune() throws IOException {
+		Set<String> used = new HashSet<>();
+		for (String key : keys.values()) {
+			used.add(cacheFile(key).getFileName().toString());
+		}
+
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(cache)) {
+			for (Path file : files) {
+				if (!used.contains(file.getFileName().toString())) Files.deleteIfExists(file);
+			}
+		}
+	}
+}
@@ -0,0 +1,153 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016, 2017, 2018 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.fabricmc.loom.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.MoreFiles;
+
+import org.gradle.api.Project;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+
+import net.fabricmc.loom.LoomGradleExtension;
+
+/**
+ * Keeps a skeleton copy of each classpath jar in the user cache, keyed by the hash of the jar's contents, which only has the
+ * class headers, super types, interfaces and member signatures the remapper actually needs from the classpath.
+ *
+ * <p>Reading the skeletons in place of the real jars saves parsing all the code in every library class each time something is remapped.
+ */
+public class ClasspathIndex {
+	/** Bumped whenever what goes into the skeletons changes, so old ones are not used */
+	private static final String VERSION = "v1";
+	private static final Map<Path, Indexed> INDEXED = new ConcurrentHashMap<>();
+
+	private static class Indexed {
+		public final long size, modified;
+		public final Path skeleton;
+
+		Indexed(long size, long modified, Path skeleton) {
+			this.size = size;
+			this.modified = modified;
+			this.skeleton = skeleton;
+		}
+	}
+
+	/** The skeleton jars for each of the given classpath entries, with anything which isn't a jar left as is */
+	public static Path[] skeletons(Project project, Path... classpath) throws IOException {
+		File cache = new File(project.getExtensions().getByType(LoomGradleExtension.class).getUserCache(), "classpath_index");
+		cache.mkdirs();
+
+		Path[] out = new Path[classpath.length];
+		for (int i = 0; i < classpath.length; i++) {
+			Path entry = classpath[i];
+
+			if (Files.isRegularFile(entry) && entry.getFileName().toString().endsWith(".jar")) {
+				out[i] = skeleton(cache.toPath(), entry);
+			} else {
+				out[i] = entry;
+			}
+		}
+
+		return out;
+	}
+
+	private static Path skeleton(Path cache, Path jar) throws IOException {
+		Path key = jar.toAbsolutePath();
+		BasicFileAttributes attributes = Files.readAttributes(key, BasicFileAttributes.class);
+		long size = attributes.size(), modified = attributes.lastModifiedTime().toMillis();
+
+		//Avoid hashing the same jar over and over when it hasn't changed since it was last looked at
+		Indexed known = INDEXED.get(key);
+		if (known != null && known.size == size && known.modified == modified && Files.exists(known.skeleton)) {
+			return known.skeleton;
+		}
+
+		String hash = MoreFiles.asByteSource(key).hash(Hashing.sha256()).toString();
+		Path skeleton = cache.resolve(hash + '-' + VERSION + ".jar");
+
+		if (Files.notExists(skeleton)) {
+			Path temp = Files.createTempFile(cache, hash, ".tmp");
+
+			try {
+				write(key, temp);
+				Files.move(temp, skeleton, StandardCopyOption.REPLACE_EXISTING);
+			} finally {
+				Files.deleteIfExists(temp);
+			}
+		}
+
+		INDEXED.put(key, new Indexed(size, modified, skeleton));
+		return skeleton;
+	}
+
+	private static void write(Path jar, Path to) throws IOException {
+		try (ZipInputStream in = new ZipInputStream(new BufferedInputStream(Files.newInputStream(jar)));
+				ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(to)))) {
+			Set<String> seen = new HashSet<>();
+
+			for (ZipEntry entry = in.getNextEntry(); entry != null; entry = in.getNextEntry()) {
+				if (entry.isDirectory() || !entry.getName().endsWith(".class") || !seen.add(entry.getName())) continue;
+
+				byte[] skeleton;
+				try {
+					skeleton = strip(in);
+				} catch (RuntimeException e) {
+					throw new IOException("Unable to read " + entry.getName() + " in " + jar, e);
+				}
+
+				out.putNextEntry(new ZipEntry(entry.getName()));
+				out.write(skeleton);
+				out.closeEntry();
+			}
+		}
+	}
+
+	private static byte[] strip(InputStream in) throws IOException {
+		ClassReader reader = new ClassReader(ByteStreams.toByteArray(in));
+		ClassWriter writer = new ClassWriter(0);
+		//Method bodies, debug information and frames are never needed for working out the hierarchy
+		reader.accept(writer, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+		return writer.toByteArray();
+	}
+}
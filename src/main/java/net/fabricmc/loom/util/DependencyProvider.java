@@ -25,8 +25,6 @@
 package net.fabricmc.loom.util;
 
 import com.google.common.collect.Iterables;
-import com.google.gson.Gson;
-import com.google.gson.JsonObject;
 
 import net.fabricmc.loom.LoomGradleExtension;
 import net.fabricmc.loom.YarnGithubResolver.GithubDependency;
@@ -39,10 +37,7 @@ import org.gradle.api.artifacts.Dependency;
 import org.gradle.api.artifacts.ResolvedDependency;
 import org.gradle.api.artifacts.SelfResolvingDependency;
 
-import org.zeroturnaround.zip.ZipUtil;
-
 import java.io.File;
-import java.nio.charset.StandardCharsets;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
@@ -188,17 +183,17 @@ public abstract class DependencyProvider {
 			}
 
 			String name, version;
-			if ("jar".equals(FilenameUtils.getExtension(root.getName())) && ZipUtil.containsEntry(root, "fabric.mod.json")) {
+			if (ArtifactInfo.isFabricMod(project, root)) {
 				//It's a Fabric mod, see how much we can extract out
-				JsonObject json = new Gson().fromJson(new String(ZipUtil.unpackEntry(root, "fabric.mod.json"), StandardCharsets.UTF_8), JsonObject.class);
-				if (json == null || !json.has("id") || !json.has("version")) throw new IllegalArgumentException("Invalid Fabric mod jar: " + root + " (malformed json: " + json + ')');
+				JarMetadata metadata = JarMetadata.of(project, root);
+				if (metadata.getModId() == null || metadata.getModVersion() == null) throw new IllegalArgumentException("Invalid Fabric mod jar: " + root + " (missing id or version)");
 
-				if (json.has("name")) {//Go for the name field if it's got one
-					name = json.get("name").getAsString();
+				if (metadata.getModName() != null) {//Go for the name field if it's got one
+					name = metadata.getModName();
 				} else {
-					name = json.get("id").getAsString();
+					name = metadata.getModId();
 				}
-				version = json.get("version").getAsString();
+				version = metadata.getModVersion();
 			} else {
 				//Not a Fabric mod, just have to make something up
 				name = FilenameUtils.removeExtension(root.getName());
@@ -0,0 +1,328 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016, 2017, 2018 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.io.IOUtils;
+import org.gradle.api.Project;
+import org.objectweb.asm.ClassReader;
+
+import com.google.common.hash.Hashing;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+
+import net.fabricmc.loom.LoomGradleExtension;
+
+/**
+ * What Loom needs to know about a jar from its contents: the mod id and version from its {@code fabric.mod.json}, the
+ * jars nested within it, any installer JSONs, the names of its mixin configs and which classes it has and uses.
+ *
+ * <p>Each jar is only read once, with the results kept in {@link LoomGradleExtension#getUserCache()} keyed by the jar's
+ * path. A record is used whilst the jar's size and modification time match, or failing that whilst its contents still
+ * hash the same, so a jar which is only touched isn't read again.
+ */
+public class JarMetadata {
+	/** Bumped whenever a change to Loom changes what is read from jars */
+	private static final int FORMAT = 2;
+	private static final Gson GSON = new Gson();
+	private static final Map<File, JarMetadata> LOADED = new ConcurrentHashMap<>();
+
+	private final int format;
+	private final String path, hash;
+	private final long size, modified;
+
+	private final boolean fabricMod;
+	private final String modId, modVersion, modName;
+	private final List<String> nestedJars;
+	private final Map<String, String> installerJsons;
+	private final List<String> mixinConfigs;
+	private final List<String> classes, references;
+
+	private JarMetadata(String path, long size, long modified, String hash, boolean fabricMod, String modId, String modVersion, String modName,
+			List<String> nestedJars, Map<String, String> installerJsons, List<String> mixinConfigs, List<String> classes, List<String> references) {
+		format = FORMAT;
+		this.path = path;
+		this.size = size;
+		this.modified = modified;
+		this.hash = hash;
+		this.fabricMod = fabricMod;
+		this.modId = modId;
+		this.modVersion = modVersion;
+		this.modName = modName;
+		this.nestedJars = nestedJars;
+		this.installerJsons = installerJsons;
+		this.mixinConfigs = mixinConfigs;
+		this.classes = classes;
+		this.references = references;
+	}
+
+	/** The metadata for the given jar, only reading the jar if it has changed since it was last read */
+	public static JarMetadata of(Project project, File jar) {
+		File key = jar.getAbsoluteFile();
+		long size = key.length();
+		long modified = key.lastModified();
+
+		JarMetadata metadata = LOADED.get(key);
+		if (metadata != null && metadata.size == size && metadata.modified == modified) return metadata;
+
+		File record = recordFor(project, key);
+		if (metadata == null) metadata = read(record, key);
+
+		if (metadata == null || metadata.size != size || metadata.modified != modified) {
+			try {
+				String hash = RemapManifest.hash(key);
+
+				if (metadata != null && hash.equals(metadata.hash)) {
+					metadata = metadata.touched(size, modified);
+				} else {
+					project.getLogger().debug("Indexing " + key);
+					metadata = scan(key, size, modified, hash);
+				}
+
+				write(record, metadata);
+			} catch (IOException e) {
+				throw new UncheckedIOException("Failed to index " + key, e);
+			}
+		}
+
+		LOADED.put(key, metadata);
+		return metadata;
+	}
+
+	private static File recordFor(Project project, File jar) {
+		LoomGradleExtension extension = project.getExtensions().getByType(LoomGradleExtension.class);
+		File index = new File(extension.getUserCache(), "jar_metadata");
+		if (!index.exists()) {
+			index.mkdirs();
+		}
+		return new File(index, Hashing.sha256().hashString(jar.getPath(), StandardCharsets.UTF_8) + ".json");
+	}
+
+	private static JarMetadata read(File record, File jar) {
+		if (!record.exists()) return null;
+
+		JarMetadata metadata;
+		try (Reader reader = Files.newBufferedReader(record.toPath(), StandardCharsets.UTF_8)) {
+			metadata = GSON.fromJson(reader, JarMetadata.class);
+		} catch (IOException | JsonParseException e) {
+			return null; //Can't trust a record which can't be read, so the jar will just be read again
+		}
+
+		return metadata != null && metadata.format == FORMAT && jar.getPath().equals(metadata.path) ? metadata : null;
+	}
+
+	private static void write(File record, JarMetadata metadata) throws IOException {
+		//Written to the side and moved into place so another build never sees half a record
+		File temp = File.createTempFile(record.getName(), ".tmp", record.getParentFile());
+		try {
+			try (Writer writer = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8)) {
+				GSON.toJson(metadata, writer);
+			}
+			Files.move(temp.toPath(), record.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			temp.delete();
+		}
+	}
+
+	private JarMetadata touched(long size, long modified) {
+		return new JarMetadata(path, size, modified, hash, fabricMod, modId, modVersion, modName, nestedJars, installerJsons, mixinConfigs, classes, references);
+	}
+
+	private static JarMetadata scan(File jar, long size, long modified, String hash) throws IOException {
+		boolean fabricMod = false;
+		String modId = null, modVersion = null, modName = null;
+		List<String> nestedJars = new ArrayList<>();
+		Map<String, String> installerJsons = new LinkedHashMap<>();
+		List<String> mixinConfigs = new ArrayList<>();
+		List<String> classes = new ArrayList<>();
+		Set<String> references = new TreeSet<>();
+
+		try (ZipFile zip = new ZipFile(jar)) {
+			for (Enumeration<? extends ZipEntry> entries = zip.entries(); entries.hasMoreElements();) {
+				ZipEntry entry = entries.nextElement();
+				String name = entry.getName();
+				if (entry.isDirectory()) continue;
+
+				if (name.endsWith(".class")) {
+					try (InputStream in = zip.getInputStream(entry)) {
+						readClass(IOUtils.toByteArray(in), classes, references);
+					}
+					continue;
+				}
+
+				//Everything else wanted is a JSON file in the root directory
+				if (!name.endsWith(".json") || name.contains("/") || name.contains("\\")) continue;
+
+				String contents;
+				try (InputStream in = zip.getInputStream(entry)) {
+					contents = IOUtils.toString(in, StandardCharsets.UTF_8);
+				}
+
+				if ("fabric.mod.json".equals(name)) {
+					fabricMod = true;
+
+					JsonObject json = GSON.fromJson(contents, JsonObject.class);
+					if (json == null) continue;
+
+					modId = getString(json, "id");
+					modVersion = getString(json, "version");
+					modName = getString(json, "name");
+
+					if (json.has("jars")) {
+						JsonArray jars = json.getAsJsonArray("jars");
+						for (int i = 0; i < jars.size(); i++) {
+							nestedJars.add(jars.get(i).getAsJsonObject().get("file").getAsString());
+						}
+					}
+				} else if (name.startsWith("fabric-installer.")) {
+					installerJsons.put(name, contents);
+				} else {
+					JsonObject json;
+					try {
+						json = GSON.fromJson(contents, JsonObject.class);
+					} catch (JsonParseException e) {
+						continue;
+					}
+
+					if (MixinRefmapHelper.isMixinConfig(json)) {
+						mixinConfigs.add(name);
+					}
+				}
+			}
+		}
+
+		references.removeAll(classes);
+		return new JarMetadata(jar.getPath(), size, modified, hash, fabricMod, modId, modVersion, modName, nestedJars, installerJsons, mixinConfigs,
+				classes, new ArrayList<>(references));
+	}
+
+	private static void readClass(byte[] data, List<String> classes, Set<String> references) {
+		ClassReader reader;
+		String name;
+		try {
+			reader = new ClassReader(data);
+			name = reader.getClassName();
+		} catch (RuntimeException e) {
+			return; //Not a class anything could use, so nothing to say about it
+		}
+		//Use the name the class says it has, as that's what the remapper goes by rather than where it is
+		classes.add(name);
+
+		char[] buffer = new char[reader.getMaxStringLength()];
+		for (int i = 1, items = reader.getItemCount(); i < items; i++) {
+			int offset = reader.getItem(i);
+
+			//The second slot of a long or double has no offset, everything else is offset just past its tag
+			if (offset == 0 || reader.readByte(offset - 1) != 7 /* CONSTANT_Class */) continue;
+
+			String type = reader.readUTF8(offset, buffer);
+			if (type.charAt(0) == '[') {
+				int start = type.lastIndexOf('[') + 1;
+				if (type.charAt(start) != 'L') continue; //Array of primitives
+				type = type.substring(start + 1, type.length() - 1);
+			}
+
+			if (!type.startsWith("java/")) references.add(type);
+		}
+	}
+
+	private static String getString(JsonObject json, String key) {
+		JsonElement element = json.get(key);
+		return element != null && !element.isJsonNull() ? element.getAsString() : null;
+	}
+
+	/** Whether the jar has a {@code fabric.mod.json} */
+	public boolean isFabricMod() {
+		return fabricMod;
+	}
+
+	/** The id from the jar's {@code fabric.mod.json}, or {@code null} if it doesn't have one */
+	public String getModId() {
+		return modId;
+	}
+
+	/** The version from the jar's {@code fabric.mod.json}, or {@code null} if it doesn't have one */
+	public String getModVersion() {
+		return modVersion;
+	}
+
+	/** The name from the jar's {@code fabric.mod.json}, or {@code null} if it doesn't have one */
+	public String getModName() {
+		return modName;
+	}
+
+	/** The paths within the jar of the jars its {@code fabric.mod.json} lists as nested */
+	public List<String> getNestedJars() {
+		return nestedJars != null ? Collections.unmodifiableList(nestedJars) : Collections.emptyList();
+	}
+
+	/** The contents of the installer JSON with the given name (such as {@code fabric-installer.json}), or {@code null} if the jar doesn't have it */
+	public String getInstallerJson(String name) {
+		return installerJsons != null ? installerJsons.get(name) : null;
+	}
+
+	/** The names of the mixin configs in the root of the jar */
+	public List<String> getMixinConfigs() {
+		return mixinConfigs != null ? Collections.unmodifiableList(mixinConfigs) : Collections.emptyList();
+	}
+
+	/** The SHA-256 of the jar's contents */
+	public String getHash() {
+		return hash;
+	}
+
+	/** The internal names of the classes in the jar */
+	public List<String> getClasses() {
+		return classes != null ? Collections.unmodifiableList(classes) : Collections.emptyList();
+	}
+
+	/** The internal names of the classes outside of the jar (and {@code java/}) which the jar's classes refer to */
+	public List<String> getReferences() {
+		return references != null ? Collections.unmodifiableList(references) : Collections.emptyList();
+	}
+}
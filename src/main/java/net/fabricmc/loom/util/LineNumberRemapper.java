@@ -30,13 +30,7 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.file.FileVisitResult;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.SimpleFileVisitor;
-import java.nio.file.StandardCopyOption;
-import java.nio.file.attribute.BasicFileAttributes;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -86,20 +80,11 @@ public class LineNumberRemapper {
     }
 
     public void process(ProgressLogger logger, Path input, Path output) throws IOException {
-        Files.walkFileTree(input, new SimpleFileVisitor<Path>() {
-            @Override
-            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                String rel = input.relativize(file).toString();
-                Path dst = output.resolve(rel);
-                Path parent = dst.getParent();
-                if (parent != null) {
-                    Files.createDirectories(parent);
-                }
-                String fName = file.getFileName().toString();
-                if (fName.endsWith(".class")) {
-                    if (Files.exists(dst)) {
-                        Files.delete(dst);
-                    }
+        try (RawZipFile in = new RawZipFile(input); RawZipWriter out = new RawZipWriter(output)) {
+            for (RawZipFile.Entry entry : in.entries()) {
+                String rel = entry.name;
+
+                if (rel.endsWith(".class")) {
                     String idx = rel.substring(0, rel.length() - 6);
                     if (logger != null) {
                         logger.progress("Remapping " + idx);
@@ -110,22 +95,19 @@ public class LineNumberRemapper {
                         idx = idx.substring(0, dollarPos);
                     }
                     if (lineMap.containsKey(idx)) {
-                        try (InputStream is = Files.newInputStream(file)) {
-                            ClassReader reader = new ClassReader(is);
-                            ClassWriter writer = new ClassWriter(0);
+                        ClassReader reader = new ClassReader(in.read(entry));
+                        ClassWriter writer = new ClassWriter(0);
 
-                            reader.accept(new LineNumberVisitor(Opcodes.ASM7, writer, lineMap.get(idx)), 0);
-                            Files.write(dst, writer.toByteArray());
-                        }
+                        reader.accept(new LineNumberVisitor(Opcodes.ASM7, writer, lineMap.get(idx)), 0);
+                        out.write(rel, writer.toByteArray());
                     }
 
                 } else {
-                    Files.copy(file, dst, StandardCopyOption.REPLACE_EXISTING);
+                    //Nothing changes, so no need to decompress it only to compress it again
+                    out.copy(in, entry);
                 }
-
-                return FileVisitResult.CONTINUE;
             }
-        });
+        }
     }
 
     private static class LineNumberVisitor extends ClassVisitor {
@@ -113,15 +113,7 @@ public class LoomDependencyManager {
 		{
 			String mappingsKey = mappingsProvider.mappingsName + "." + mappingsProvider.minecraftVersion.replace(' ', '_').replace('.', '_').replace('-', '_') + "." + mappingsProvider.mappingsVersion;
 
-			for (RemappedConfigurationEntry entry : Constants.MOD_COMPILE_ENTRIES) {
-				ModCompileRemapper.remapDependencies(
-						project, mappingsKey, extension,
-						project.getConfigurations().getByName(entry.getSourceConfiguration()),
-						project.getConfigurations().getByName(entry.getRemappedConfiguration()),
-						project.getConfigurations().getByName(entry.getTargetConfiguration(project.getConfigurations())),
-						afterTasks::add
-				);
-			}
+			ModCompileRemapper.remapDependencies(project, mappingsKey, extension, afterTasks::add);
 		}
 
 		if (extension.getInstallerJson() == null) {
@@ -26,137 +26,385 @@ package net.fabricmc.loom.util;
 
 
 import net.fabricmc.loom.LoomGradleExtension;
+import net.fabricmc.loom.providers.MappingsCache;
 import net.fabricmc.loom.providers.MinecraftMappedProvider;
 import net.fabricmc.loom.providers.MinecraftProvider;
-import net.fabricmc.loom.providers.mappings.MappingSplat;
+import net.fabricmc.loom.providers.mappings.DescRemapper;
+import net.fabricmc.loom.providers.mappings.NamespaceIndex;
 import net.fabricmc.loom.util.AccessTransformerHelper.ZipEntryAT;
+import net.fabricmc.loom.util.TransformingOutputConsumer.EntryTransformer;
 import net.fabricmc.mappings.ClassEntry;
 import net.fabricmc.mappings.EntryTriple;
 import net.fabricmc.mappings.Mappings;
 import net.fabricmc.mappings.MethodEntry;
 import net.fabricmc.stitch.util.Pair;
 import net.fabricmc.loom.providers.MappingsProvider;
-import net.fabricmc.tinyremapper.OutputConsumerPath;
 import net.fabricmc.tinyremapper.TinyRemapper;
 
 import org.gradle.api.InvalidUserDataException;
 import org.gradle.api.Project;
 
-import org.zeroturnaround.zip.ZipUtil;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
 public class MapJarsTiny {
-
-	public void mapJars(MinecraftProvider jarProvider, MinecraftMappedProvider mapProvider, Project project) throws IOException {
+	/** Special marker for transforming the class itself rather than a method */
+	private static final String WILDCARD = "<*>";
+
+	/**
+	 * Remap the merged jar into the untransformed jars, also writing the transformed jars at the same time if any access
+	 * transformations are given, so the classes they change are transformed as they come out of the remapper
+	 *
+	 * @param ats The access transformations to make the transformed jars with, or {@code null} if there aren't any
+	 */
+	public void mapJars(MinecraftProvider jarProvider, MinecraftMappedProvider mapProvider, Project project, Set<Pair<String, String>> ats) throws IOException {
 		String fromM = "official";
 
 		LoomGradleExtension extension = project.getExtensions().getByType(LoomGradleExtension.class);
 		MappingsProvider mappingsProvider = extension.getMappingsProvider();
 
-		Path[] classpath = mapProvider.getMapperPaths().stream()
+		Path[] classpath = classpath(project, mapProvider);
+
+		NamespaceIndex index = ats != null ? mappingsProvider.getMappingsIndex() : null;
+		//Resolved before remapping so any invalid access transformations are found without having to wait for it
+		Pair<Map<String, Set<String>>, Map<String, Set<String>>> transforms = ats != null ? findTransforms(project, index, ats, true) : null;
+
+		Path input = jarProvider.getMergedJar().toPath();
+		Path outputMapped = mapProvider.getUntransformedMappedJar().toPath();
+		Path outputIntermediary = mapProvider.getUntransformedIntermediaryJar().toPath();
+
+		List<String> targets = Arrays.asList("named", "intermediary");
+		long jarSize = Files.size(input);
+		for (Path library : classpath) {
+			jarSize += Files.size(library);
+		}
+		Mappings mappings = mappingsProvider.getMappings();
+		int parallelism = pickParallelism(targets.size(), jarSize, mappings.getClassEntries().size() + mappings.getFieldEntries().size() + mappings.getMethodEntries().size());
+		if (parallelism < targets.size()) {
+			project.getLogger().info("Remapping minecraft one jar at a time as there isn't the free heap to do both at once");
+		}
+
+		//Any remaps run at once split the threads between them rather than each trying to use them all
+		int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / parallelism);
+		ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+
+		try {
+			List<Future<?>> remaps = new ArrayList<>();
+
+			for (String toM : targets) {
+				//Wait for a remap to finish before making another remapper when already running as many as there's heap for
+				if (remaps.size() >= parallelism) {
+					remaps.get(remaps.size() - parallelism).get();
+				}
+
+				Path output = "named".equals(toM) ? outputMapped : outputIntermediary;
+				Path transformedOutput = ats == null ? null : ("named".equals(toM) ? mapProvider.getMappedJar() : mapProvider.getIntermediaryJar()).toPath();
+				Map<String, ZipEntryAT> transformers = ats == null ? Collections.emptyMap() : makeZipATs(index, toM, "named".equals(toM) ? transforms.getLeft() : transforms.getRight());
+
+				project.getLogger().lifecycle(":remapping minecraft (TinyRemapper, " + fromM + " -> " + toM + ")");
+
+				//Made up front as the mappings provider isn't thread safe
+				TinyRemapper remapper = TinyRemapper.newRemapper()
+						.withMappings(mappingsProvider.mcRemappingFactory.create(fromM, toM))
+						.renameInvalidLocals(true)
+						.rebuildSourceFilenames(true)
+						.threads(threads)
+						.build();
+
+				remaps.add(executor.submit(() -> {
+					//The transformed jar is closed last so it is never older than the untransformed one
+					try (TransformingOutputConsumer transformedConsumer = transformedOutput != null ? new TransformingOutputConsumer(transformedOutput) : null;
+							TransformingOutputConsumer outputConsumer = new TransformingOutputConsumer(output)) {
+						BiConsumer<String, byte[]> consumer = outputConsumer;
+
+						if (transformedConsumer != null) {
+							transformers.forEach((path, transformer) -> transformedConsumer.addTransformer(path, transformer::transform));
+							transformedConsumer.addNonClassFiles(input);
+							consumer = consumer.andThen(transformedConsumer);
+						}
+
+						outputConsumer.addNonClassFiles(input);
+						remapper.readClassPath(classpath);
+						remapper.readInputs(input);
+						remapper.apply(consumer);
+					} finally {
+						remapper.finish();
+					}
+
+					checkTransformed(transformers.values());
+					return null;
+				}));
+			}
+
+			for (Future<?> remap : remaps) {
+				remap.get();
+			}
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Failed to remap JAR", e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted remapping JAR", e);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * How many of the given number of remaps of Minecraft can run at once, with each reading the whole jar and classpath alongside its own copy of the mappings
+	 *
+	 * <p>Uses the same rough guesses as {@link ModProcessor} does for remapping mods in parallel
+	 */
+	private static int pickParallelism(int remaps, long jarSize, int mappings) {
+		Runtime runtime = Runtime.getRuntime();
+
+		long free = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+		long perRemap = Math.max(1, jarSize * ModProcessor.HEAP_PER_JAR_BYTE + (long) mappings * ModProcessor.HEAP_PER_MAPPING);
+
+		return (int) Math.max(1, Math.min(remaps, free / perRemap));
+	}
+
+	private static Path[] classpath(Project project, MinecraftMappedProvider mapProvider) throws IOException {
+		return ClasspathIndex.skeletons(project, mapProvider.getMapperPaths().stream()
 				.map(File::toPath)
-				.toArray(Path[]::new);
+				.toArray(Path[]::new));
+	}
+
+	/**
+	 * Make the named jar from one made with a different version of the mappings, only remapping the classes which
+	 * {@link MappingsDelta} finds would come out differently and copying everything else from the previous jar as is
+	 *
+	 * @return Whether the named jar was made, if not it needs to be remapped in full
+	 */
+	public boolean remapChanges(MinecraftProvider jarProvider, MinecraftMappedProvider mapProvider, Project project, File previousJar, String previousVersion) throws IOException {
+		LoomGradleExtension extension = project.getExtensions().getByType(LoomGradleExtension.class);
+		MappingsProvider mappingsProvider = extension.getMappingsProvider();
 
 		Path input = jarProvider.getMergedJar().toPath();
-		Path outputMapped = mapProvider.getMappedJar().toPath();
-		Path outputIntermediary = mapProvider.getIntermediaryJar().toPath();
+		Path output = mapProvider.getUntransformedMappedJar().toPath();
+
+		NamespaceIndex from = MappingsCache.INSTANCE.getIndex(mappingsProvider.getMappingsTiny(previousVersion).toPath());
+		NamespaceIndex to = mappingsProvider.getMappingsIndex();
+		Set<String> changed = MappingsDelta.changedClasses(input, from, to, "official", "named",
+				readParameterNames(mappingsProvider.getParameterNames(previousVersion)), readParameterNames(mappingsProvider.getParameterNames(mappingsProvider.mappingsVersion)));
+
+		//Any class which changes will be written under its new name, so whatever it was called before needs leaving behind
+		Set<String> replaced = new HashSet<>();
+		for (String name : changed) {
+			String named = from.mapClass("official", "named", name);
+			replaced.add((named != null ? named : name) + ".class");
+		}
+
+		project.getLogger().lifecycle(":remapping minecraft (TinyRemapper, official -> named, " + changed.size() + " classes changed since " + previousVersion + ')');
+
+		Path temp = Files.createTempDirectory(output.toAbsolutePath().getParent(), "remap");
+		try {
+			Path changedClasses = temp.resolve("changed_classes.jar");
+			Path unchangedClasses = temp.resolve("unchanged_classes.jar");
+			int classCount = 0;
 
-		for (String toM : Arrays.asList("named", "intermediary")) {
-			Path output = "named".equals(toM) ? outputMapped : outputIntermediary;
+			try (RawZipFile in = new RawZipFile(input); RawZipWriter changedOut = new RawZipWriter(changedClasses); RawZipWriter unchangedOut = new RawZipWriter(unchangedClasses)) {
+				for (RawZipFile.Entry entry : in.entries()) {
+					if (entry.isDirectory() || !entry.name.endsWith(".class")) continue;
 
-			project.getLogger().lifecycle(":remapping minecraft (TinyRemapper, " + fromM + " -> " + toM + ")");
+					String name = entry.name.substring(0, entry.name.length() - ".class".length());
+					(changed.contains(name) ? changedOut : unchangedOut).copy(in, entry);
+					classCount++;
+				}
+			}
 
 			TinyRemapper remapper = TinyRemapper.newRemapper()
-					.withMappings(mappingsProvider.mcRemappingFactory.create(fromM, toM))
+					.withMappings(mappingsProvider.mcRemappingFactory.create("official", "named"))
 					.renameInvalidLocals(true)
 					.rebuildSourceFilenames(true)
 					.build();
 
-			try (OutputConsumerPath outputConsumer = new OutputConsumerPath(output)) {
-				outputConsumer.addNonClassFiles(input);
-				remapper.readClassPath(classpath);
-				remapper.readInputs(input);
+			Path remapped = temp.resolve("remapped.jar");
+			try (TransformingOutputConsumer outputConsumer = new TransformingOutputConsumer(remapped)) {
+				remapper.readClassPath(classpath(project, mapProvider));
+				remapper.readClassPath(unchangedClasses);
+				remapper.readInputs(changedClasses);
 				remapper.apply(outputConsumer);
-			} catch (Exception e) {
-				throw new RuntimeException("Failed to remap JAR", e);
+
+				outputConsumer.addFiles(previousJar.toPath(), path -> !path.endsWith("/") && !replaced.contains(path));
 			} finally {
 				remapper.finish();
 			}
+
+			//If anything in the previous jar was somewhere unexpected the class count won't match up
+			int remappedCount = 0;
+			try (RawZipFile in = new RawZipFile(remapped)) {
+				for (RawZipFile.Entry entry : in.entries()) {
+					if (!entry.isDirectory() && entry.name.endsWith(".class")) remappedCount++;
+				}
+			}
+
+			if (remappedCount != classCount) {
+				project.getLogger().warn("Expected " + classCount + " classes remapping changes from " + previousVersion + " but ended up with " + remappedCount);
+				return false;
+			}
+
+			Files.move(remapped, output, StandardCopyOption.REPLACE_EXISTING);
+			return true;
+		} finally {
+			Files.walkFileTree(temp, new DeletingFileVisitor());
 		}
 	}
 
-	public static void transform(Project project, Set<Pair<String, String>> ats, MinecraftMappedProvider jarProvider, MappingsProvider mappingProvider) throws IOException {
+	private static Map<String, String[]> readParameterNames(File parameterNames) throws IOException {
+		return parameterNames.exists() ? MappingsProvider.readParameterNames(parameterNames) : Collections.emptyMap();
+	}
+
+	/**
+	 * Apply the given access transformations to the untransformed jars, writing them to the jars Gradle is given
+	 *
+	 * <p>Each jar is recorded separately as the intermediary jar is shared between mappings versions whilst the named jar isn't,
+	 * so either can already have the given transformations without the other. A jar which already does is left alone.
+	 *
+	 * @param lastNamedATs The transformations the transformed named jar already has, if it can be built upon rather than made again
+	 * @param lastIntermediaryATs The transformations the transformed intermediary jar already has, if it can be built upon rather than made again
+	 */
+	public static void transform(Project project, Set<Pair<String, String>> lastNamedATs, Set<Pair<String, String>> lastIntermediaryATs, Set<Pair<String, String>> ats,
+			MinecraftMappedProvider jarProvider, MappingsProvider mappingProvider) throws IOException {
+		boolean named = !ats.equals(lastNamedATs);
+		boolean intermediary = !ats.equals(lastIntermediaryATs);
+		if (!named && !intermediary) return;
+
 		project.getLogger().info("Reading in mappings...");
 
-		Mappings mappings;
-		try (InputStream in = new FileInputStream(mappingProvider.MAPPINGS_TINY)) {
-			mappings = net.fabricmc.mappings.MappingsProvider.readTinyMappings(in, false);
-		}
+		NamespaceIndex index = mappingProvider.getMappingsIndex();
+		Mappings mappings = index.getMappings();
 
 		project.getLogger().info("Read in " + mappings.getClassEntries().size() + " classes");
 		project.getLogger().info("Working out what we have to do");
 
-		final String wildcard = "<*>"; //Special marker for the class itself rather than a method
+		Pair<Map<String, Set<String>>, Map<String, Set<String>>> transforms = findTransforms(project, index, ats, true);
+		//Anything from the last transformations which doesn't resolve can't have been applied, so there's no need to complain about it
+		Map<String, Set<String>> lastNamedTransforms = named && lastNamedATs != null ? findTransforms(project, index, lastNamedATs, false).getLeft() : null;
+		Map<String, Set<String>> lastInterTransforms = intermediary && lastIntermediaryATs != null ? findTransforms(project, index, lastIntermediaryATs, false).getRight() : null;
+
+		project.getLogger().info("Found " + transforms.getLeft().size() + " classes that need tinkering with");
+		project.getLogger().lifecycle(":transforming minecraft");
+
+		//Neither jar depends on the other, so both can be transformed at once
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			List<Future<?>> jobs = new ArrayList<>();
+			if (intermediary) {
+				jobs.add(executor.submit(() -> {
+					project.getLogger().info("Transforming intermediary jar");
+					doTheDeed(jarProvider.getUntransformedIntermediaryJar(), jarProvider.getIntermediaryJar(), index, "intermediary", transforms.getRight(), lastInterTransforms);
+					return null;
+				}));
+			}
+			if (named) {
+				jobs.add(executor.submit(() -> {
+					project.getLogger().info("Transforming named jar");
+					doTheDeed(jarProvider.getUntransformedMappedJar(), jarProvider.getMappedJar(), index, "named", transforms.getLeft(), lastNamedTransforms);
+					return null;
+				}));
+			}
+
+			for (Future<?> job : jobs) {
+				job.get();
+			}
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Failed to transform JAR", e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted transforming JAR", e);
+		} finally {
+			executor.shutdownNow();
+		}
+		project.getLogger().info("Transformation complete"); //Probably, successful is another matter
+	}
+
+	/**
+	 * Resolve the given access transformations into the methods (or the class itself) to transform in each class
+	 *
+	 * @param strict Whether to fail if any of the transformations can't be found in the mappings, rather than skip them
+	 *
+	 * @return The transformations for the named jar on the left, and for the intermediary jar on the right
+	 */
+	private static Pair<Map<String, Set<String>>, Map<String, Set<String>>> findTransforms(Project project, NamespaceIndex index, Set<Pair<String, String>> ats, boolean strict) {
 		Map<String, Set<String>> transforms = new HashMap<>();
 		Map<String, Set<String>> interTransforms = new HashMap<>();
 
 		Map<Boolean, Set<Pair<String, String>>> bits = ats.stream().collect(Collectors.partitioningBy(pair -> pair.getRight() != null, Collectors.toSet()));
 		Set<String> rawClasses = bits.get(Boolean.FALSE).stream().map(Pair::getLeft).collect(Collectors.toSet());
 
-		for (ClassEntry entry : mappings.getClassEntries()) {
-			String named = entry.get("named");
-			if (rawClasses.contains(named)) {
-				rawClasses.remove(named);
+		for (Iterator<String> it = rawClasses.iterator(); it.hasNext();) {
+			String named = it.next();
+			ClassEntry entry = index.getClass("named", named);
+
+			if (entry != null) {
+				it.remove();
 
 				String inter = entry.get("intermediary");
 				if (inter == null) throw new IllegalStateException("Missing intermediary name for " + named);
-				transforms.computeIfAbsent(named, k -> new HashSet<>()).add(wildcard);
-				interTransforms.computeIfAbsent(inter, k -> new HashSet<>()).add(wildcard);
+				transforms.computeIfAbsent(named, k -> new HashSet<>()).add(WILDCARD);
+				interTransforms.computeIfAbsent(inter, k -> new HashSet<>()).add(WILDCARD);
 			}
 		}
 
 		Map<String, Set<String>> methods = bits.get(Boolean.TRUE).stream().collect(Collectors.groupingBy(Pair::getLeft, Collectors.mapping(Pair::getRight, Collectors.toSet())));
-		for (MethodEntry entry : mappings.getMethodEntries()) {
-			EntryTriple named = entry.get("named");
-			Set<String> targets = methods.get(named.getOwner());
-
-			if (targets != null && targets.contains(named.getName() + named.getDesc())) {
-				EntryTriple inter = entry.get("intermediary");
-				if (inter == null) throw new IllegalStateException("Missing intermediary name for " + named);
-				transforms.computeIfAbsent(named.getOwner(), k -> new HashSet<>()).add(named.getName() + named.getDesc());
-				interTransforms.computeIfAbsent(inter.getOwner(), k -> new HashSet<>()).add(inter.getName() + inter.getDesc());
-
-				targets.remove(named.getName() + named.getDesc());
-				if (targets.isEmpty()) methods.remove(named.getOwner());
+		for (Iterator<Entry<String, Set<String>>> it = methods.entrySet().iterator(); it.hasNext();) {
+			Entry<String, Set<String>> entry = it.next();
+			String owner = entry.getKey();
+			Set<String> targets = entry.getValue();
+
+			for (Iterator<String> targetIt = targets.iterator(); targetIt.hasNext();) {
+				String target = targetIt.next();
+				int split = target.indexOf('(');
+				if (split < 0) continue; //Not a method, will be complained about below
+
+				EntryTriple named = new EntryTriple(owner, target.substring(0, split), target.substring(split));
+				MethodEntry method = index.getMethod("named", named);
+
+				if (method != null) {
+					EntryTriple inter = method.get("intermediary");
+					if (inter == null) throw new IllegalStateException("Missing intermediary name for " + named);
+					transforms.computeIfAbsent(owner, k -> new HashSet<>()).add(target);
+					interTransforms.computeIfAbsent(inter.getOwner(), k -> new HashSet<>()).add(inter.getName() + inter.getDesc());
+
+					targetIt.remove();
+				}
 			}
+
+			if (targets.isEmpty()) it.remove();
 		}
 
 		if (!methods.isEmpty()) {
 			List<String> resolved = new ArrayList<>();
 			UnaryOperator<String> remapper = name -> {
-				for (ClassEntry classEntry : mappings.getClassEntries()) {
-					if (name.equals(classEntry.get("named"))) {
-						return classEntry.get("intermediary");
-					}
-				}
-
-				return name;
+				String inter = index.mapClass("named", "intermediary", name);
+				return inter != null ? inter : name;
 			};
+			DescRemapper descRemapper = new DescRemapper(remapper);
 
 			for (Entry<String, Set<String>> entry : methods.entrySet()) {
 				List<String> resolvedConstructors = new ArrayList<>();
@@ -168,7 +416,7 @@ public class MapJarsTiny {
 						resolvedConstructors.add(method);
 
 						transforms.computeIfAbsent(entry.getKey(), k -> new HashSet<>()).add(method);
-						interTransforms.computeIfAbsent(remapper.apply(entry.getKey()), k -> new HashSet<>()).add(MappingSplat.remapDesc(method, remapper));
+						interTransforms.computeIfAbsent(remapper.apply(entry.getKey()), k -> new HashSet<>()).add(descRemapper.remap(method));
 					}
 				}
 
@@ -184,7 +432,7 @@ public class MapJarsTiny {
 			if (!resolved.isEmpty()) resolved.forEach(methods::remove);
 		}
 
-		if (!rawClasses.isEmpty() || !methods.isEmpty()) {
+		if (strict && (!rawClasses.isEmpty() || !methods.isEmpty())) {
 			project.getLogger().error("Unable to find mappings for the following entries in access transformer:");
 			rawClasses.forEach(name -> project.getLogger().error('\t' + name));
 			methods.forEach((key, value) -> {
@@ -193,25 +441,52 @@ public class MapJarsTiny {
 			});
 			throw new InvalidUserDataException("Invalid lines found within access transformer");
 		}
-		project.getLogger().info("Found " + transforms.size() + " classes that need tinkering with");
-		project.getLogger().lifecycle(":transforming minecraft");
 
-		project.getLogger().info("Transforming intermediary jar");
-		doTheDeed(jarProvider.MINECRAFT_INTERMEDIARY_JAR, mappings, "intermediary", interTransforms, wildcard);
-		project.getLogger().info("Transforming named jar");
-		doTheDeed(jarProvider.MINECRAFT_MAPPED_JAR, mappings, "named", transforms, wildcard);
-		project.getLogger().info("Transformation complete"); //Probably, successful is another matter
+		return Pair.of(transforms, interTransforms);
 	}
 
-	private static void doTheDeed(File jar, Mappings mappings, String type, Map<String, Set<String>> transforms, String wildcard) throws IOException {
-		Set<String> classPool = mappings.getClassEntries().parallelStream().map(entry -> entry.get(type)).collect(Collectors.toSet());
-		ZipEntryAT[] transformers = AccessTransformerHelper.makeZipATs(classPool, transforms, wildcard);
+	/**
+	 * Write the transformed jar from the untransformed one, or only rewrite the classes whose transformations have changed
+	 * if the transformations the transformed jar was made with are given
+	 */
+	private static void doTheDeed(File untransformed, File jar, NamespaceIndex index, String type, Map<String, Set<String>> transforms, Map<String, Set<String>> lastTransforms) throws IOException {
+		Map<String, ZipEntryAT> transformers = makeZipATs(index, type, transforms);
+		List<ZipEntryAT> expected = new ArrayList<>();
+
+		if (lastTransforms == null) {
+			expected.addAll(transformers.values());
+			TransformingOutputConsumer.transformEntries(untransformed.toPath(), jar.toPath(), Maps.transformValues(transformers, transformer -> transformer::transform));
+		} else {
+			Map<String, ZipEntryAT> lastTransformers = makeZipATs(index, type, lastTransforms);
+			Map<String, EntryTransformer> changes = new HashMap<>();
+
+			try (RawZipFile in = new RawZipFile(untransformed.toPath())) {
+				for (String path : Sets.union(transformers.keySet(), lastTransformers.keySet())) {
+					ZipEntryAT transformer = transformers.get(path);
+					ZipEntryAT lastTransformer = lastTransformers.get(path);
+					if (transformer != null && lastTransformer != null && transformer.transformsSameAs(lastTransformer)) continue;
+
+					//Anything which has changed is redone from the untransformed class, so it doesn't matter what was done to it before
+					RawZipFile.Entry entry = in.getEntry(path);
+					if (transformer != null) {
+						expected.add(transformer);
+						if (entry != null) changes.put(path, data -> transformer.transform(in.read(entry)));
+					} else if (entry != null) {
+						changes.put(path, data -> in.read(entry));
+					}
+				}
 
-		ZipUtil.transformEntries(jar, transformers);
+				TransformingOutputConsumer.transformEntries(jar.toPath(), changes);
+			}
+		}
 
-		if (!Arrays.stream(transformers).allMatch(ZipEntryAT::didTransform)) {
+		checkTransformed(expected);
+	}
+
+	private static void checkTransformed(Collection<ZipEntryAT> expected) {
+		if (!expected.stream().allMatch(ZipEntryAT::didTransform)) {
 			List<String> missed = new ArrayList<>();
-			for (ZipEntryAT transformer : transformers) {
+			for (ZipEntryAT transformer : expected) {
 				if (!transformer.didTransform()) {
 					String name = transformer.getPath();
 					missed.add(name.substring(0, name.length() - ".class".length()));
@@ -220,4 +495,9 @@ public class MapJarsTiny {
 			throw new IllegalStateException("Finished transforming but missed " + missed);
 		}
 	}
+
+	private static Map<String, ZipEntryAT> makeZipATs(NamespaceIndex index, String type, Map<String, Set<String>> transforms) {
+		ZipEntryAT[] transformers = AccessTransformerHelper.makeZipATs(outer -> index.getNest(type, outer), transforms, WILDCARD);
+		return Arrays.stream(transformers).collect(Collectors.toMap(ZipEntryAT::getPath, Function.identity()));
+	}
 }
@@ -0,0 +1,292 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016, 2017, 2018 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.util;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import com.google.common.collect.Sets;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import net.fabricmc.loom.providers.mappings.NamespaceIndex;
+import net.fabricmc.mappings.EntryTriple;
+import net.fabricmc.mappings.FieldEntry;
+import net.fabricmc.mappings.MethodEntry;
+
+/**
+ * Works out which classes in a jar would remap differently with one set of mappings compared to another, so a jar which
+ * was remapped with the old mappings only needs those classes remapping again to match what the new mappings would give.
+ *
+ * <p>A class remaps differently when its own name changes, when it refers to a class whose name changes, or when it declares
+ * or refers to a member whose name changes. As a member can inherit its name from any class it is related to, a member
+ * changing counts as the member changing in every class above and below the class it is mapped in. Everything is
+ * over-approximated, remapping a class which turns out to be the same as before is only a waste of time.
+ */
+public class MappingsDelta {
+	private static final int CONSTANT_UTF8 = 1;
+	private static final int CONSTANT_CLASS = 7;
+	private static final int CONSTANT_FIELD = 9;
+	private static final int CONSTANT_METHOD = 10;
+	private static final int CONSTANT_INTERFACE_METHOD = 11;
+	private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+	/** Any class names within descriptors and signatures (or anything else in the constant pool which happens to look like one) */
+	private static final Pattern DESCRIPTOR_CLASS = Pattern.compile("L([^;<]+)[;<]");
+
+	private MappingsDelta() {
+	}
+
+	/**
+	 * Find the classes in the given jar which would remap differently going from the given namespace to the other
+	 *
+	 * @param fromLocals The local variable names which are given to the remapper along with the old mappings
+	 * @param toLocals The local variable names which are given to the remapper along with the new mappings
+	 *
+	 * @return The names of the changed classes, in the namespace the jar is in
+	 */
+	public static Set<String> changedClasses(Path jar, NamespaceIndex from, NamespaceIndex to, String fromNamespace, String toNamespace,
+			Map<String, String[]> fromLocals, Map<String, String[]> toLocals) throws IOException {
+		Map<String, ClassReader> classes = new HashMap<>();
+		try (RawZipFile in = new RawZipFile(jar)) {
+			for (RawZipFile.Entry entry : in.entries()) {
+				if (entry.isDirectory() || !entry.name.endsWith(".class")) continue;
+
+				ClassReader reader = new ClassReader(in.read(entry));
+				classes.put(reader.getClassName(), reader);
+			}
+		}
+
+		Set<String> renamed = new HashSet<>();
+		for (String name : Sets.union(from.getClasses(fromNamespace), to.getClasses(fromNamespace))) {
+			if (!Objects.equals(from.mapClass(fromNamespace, toNamespace, name), to.mapClass(fromNamespace, toNamespace, name))) {
+				renamed.add(name);
+			}
+		}
+
+		Map<String, Set<String>> changedMembers = new HashMap<>();
+		diffMembers(from.getMappings().getFieldEntries(), to.getMappings().getFieldEntries(), FieldEntry::get, fromNamespace, toNamespace, changedMembers);
+		diffMembers(from.getMappings().getMethodEntries(), to.getMappings().getMethodEntries(), MethodEntry::get, fromNamespace, toNamespace, changedMembers);
+
+		Set<String> changedLocals = new HashSet<>();
+		for (String method : Sets.union(fromLocals.keySet(), toLocals.keySet())) {
+			if (!Arrays.equals(fromLocals.get(method), toLocals.get(method))) {
+				String owner = method.substring(0, method.lastIndexOf('/', method.indexOf('(')));
+
+				//Not sure which side of the mappings the owner will be on, so it's simplest to assume it could be either
+				changedLocals.add(owner);
+				for (NamespaceIndex index : Arrays.asList(from, to)) {
+					String other = index.mapClass(toNamespace, fromNamespace, owner);
+					if (other != null) changedLocals.add(other);
+				}
+			}
+		}
+
+		Map<String, Set<String>> parents = new HashMap<>();
+		Map<String, Set<String>> children = new HashMap<>();
+		for (Entry<String, ClassReader> entry : classes.entrySet()) {
+			ClassReader reader = entry.getValue();
+
+			Set<String> supers = new HashSet<>();
+			if (reader.getSuperName() != null) supers.add(reader.getSuperName());
+			Collections.addAll(supers, reader.getInterfaces());
+			supers.retainAll(classes.keySet());
+
+			parents.put(entry.getKey(), supers);
+			for (String parent : supers) {
+				children.computeIfAbsent(parent, k -> new HashSet<>()).add(entry.getKey());
+			}
+		}
+
+		Map<String, Set<String>> dirtyMembers = new HashMap<>();
+		for (Entry<String, Set<String>> entry : changedMembers.entrySet()) {
+			for (String type : related(entry.getKey(), parents, children)) {
+				dirtyMembers.computeIfAbsent(type, k -> new HashSet<>()).addAll(entry.getValue());
+			}
+		}
+
+		return classes.entrySet().parallelStream().filter(entry -> {
+			String name = entry.getKey();
+			return isRenamed(name, renamed) || changedLocals.contains(name) || usesChanges(entry.getValue(), renamed, dirtyMembers);
+		}).map(Entry::getKey).collect(Collectors.toSet());
+	}
+
+	private static <T> void diffMembers(Collection<T> fromEntries, Collection<T> toEntries, BiFunction<T, String, EntryTriple> getter,
+			String fromNamespace, String toNamespace, Map<String, Set<String>> changed) {
+		Map<EntryTriple, String> fromNames = memberNames(fromEntries, getter, fromNamespace, toNamespace);
+		Map<EntryTriple, String> toNames = memberNames(toEntries, getter, fromNamespace, toNamespace);
+
+		for (EntryTriple member : Sets.union(fromNames.keySet(), toNames.keySet())) {
+			if (!Objects.equals(fromNames.get(member), toNames.get(member))) {
+				changed.computeIfAbsent(member.getOwner(), k -> new HashSet<>()).add(member(member.getName(), member.getDesc()));
+			}
+		}
+	}
+
+	private static <T> Map<EntryTriple, String> memberNames(Collection<T> entries, BiFunction<T, String, EntryTriple> getter, String fromNamespace, String toNamespace) {
+		Map<EntryTriple, String> names = new HashMap<>();
+
+		for (T entry : entries) {
+			EntryTriple member = getter.apply(entry, fromNamespace);
+			if (member == null) continue;
+
+			EntryTriple target = getter.apply(entry, toNamespace);
+			names.put(member, target != null ? target.getName() : null);
+		}
+
+		return names;
+	}
+
+	private static String member(String name, String desc) {
+		return name + ';' + desc;
+	}
+
+	/** The given class along with every class above or below it, and everything above those below it */
+	private static Set<String> related(String type, Map<String, Set<String>> parents, Map<String, Set<String>> children) {
+		Set<String> descendants = walk(Collections.singleton(type), children);
+		return walk(descendants, parents);
+	}
+
+	private static Set<String> walk(Set<String> from, Map<String, Set<String>> links) {
+		Set<String> out = new HashSet<>(from);
+		Deque<String> queue = new ArrayDeque<>(from);
+
+		while (!queue.isEmpty()) {
+			for (String next : links.getOrDefault(queue.pop(), Collections.emptySet())) {
+				if (out.add(next)) queue.push(next);
+			}
+		}
+
+		return out;
+	}
+
+	/** Whether the given class, or any class it is nested within, changes name */
+	private static boolean isRenamed(String name, Set<String> renamed) {
+		for (int split = name.length(); split > 0; split = name.lastIndexOf('$', split - 1)) {
+			if (renamed.contains(name.substring(0, split))) return true;
+		}
+
+		return false;
+	}
+
+	private static boolean usesChanges(ClassReader reader, Set<String> renamed, Map<String, Set<String>> dirtyMembers) {
+		Set<String> dirty = dirtyMembers.getOrDefault(reader.getClassName(), Collections.emptySet());
+		boolean[] changed = new boolean[1];
+
+		if (!dirty.isEmpty()) {
+			reader.accept(new ClassVisitor(Opcodes.ASM7) {
+				@Override
+				public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+					if (dirty.contains(member(name, descriptor))) changed[0] = true;
+					return null;
+				}
+
+				@Override
+				public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+					if (dirty.contains(member(name, descriptor))) changed[0] = true;
+					return null;
+				}
+			}, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+
+			if (changed[0]) return true;
+		}
+
+		char[] buffer = new char[reader.getMaxStringLength()];
+		for (int i = 1, end = reader.getItemCount(); i < end; i++) {
+			int offset = reader.getItem(i);
+			if (offset <= 0) continue; //The unused second slot of a long or double
+
+			switch (reader.readByte(offset - 1)) {
+			case CONSTANT_UTF8: {
+				//Only the ASCII class names matter, so anything else being mangled doesn't
+				int length = reader.readUnsignedShort(offset);
+				for (int j = 0; j < length; j++) {
+					buffer[j] = (char) reader.readByte(offset + 2 + j);
+				}
+				String value = new String(buffer, 0, length);
+
+				for (Matcher matcher = DESCRIPTOR_CLASS.matcher(value); matcher.find();) {
+					if (isRenamed(matcher.group(1), renamed)) return true;
+				}
+				break;
+			}
+
+			case CONSTANT_CLASS: {
+				String name = reader.readUTF8(offset, buffer);
+				if (name.charAt(0) != '[' && isRenamed(name, renamed)) return true;
+				break; //Arrays are descriptors, which are checked along with the rest of the UTF8 entries
+			}
+
+			case CONSTANT_FIELD:
+			case CONSTANT_METHOD:
+			case CONSTANT_INTERFACE_METHOD: {
+				String owner = reader.readClass(offset, buffer);
+				int nameAndType = reader.getItem(reader.readUnsignedShort(offset + 2));
+
+				Set<String> ownerDirty = dirtyMembers.get(owner);
+				if (ownerDirty != null && ownerDirty.contains(member(reader.readUTF8(nameAndType, buffer), reader.readUTF8(nameAndType + 2, buffer)))) {
+					return true;
+				}
+				break;
+			}
+
+			case CONSTANT_INVOKE_DYNAMIC: {
+				//Lambdas are named after the method they implement in the interface they return, which could have changed name
+				int nameAndType = reader.getItem(reader.readUnsignedShort(offset + 2));
+				Type returned = Type.getReturnType(reader.readUTF8(nameAndType + 2, buffer));
+				if (returned.getSort() != Type.OBJECT) break;
+
+				Set<String> typeDirty = dirtyMembers.get(returned.getInternalName());
+				if (typeDirty != null) {
+					String prefix = member(reader.readUTF8(nameAndType, buffer), "(");
+					if (typeDirty.stream().anyMatch(method -> method.startsWith(prefix))) return true;
+				}
+				break;
+			}
+			}
+		}
+
+		return false;
+	}
+}
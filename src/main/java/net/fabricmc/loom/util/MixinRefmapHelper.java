@@ -27,18 +27,12 @@ package net.fabricmc.loom.util;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
 
-import org.zeroturnaround.zip.ZipUtil;
-import org.zeroturnaround.zip.transform.StringZipEntryTransformer;
-import org.zeroturnaround.zip.transform.ZipEntryTransformerEntry;
-
-import java.io.File;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.nio.file.Path;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.zip.ZipEntry;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
 
 public final class MixinRefmapHelper {
     private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
@@ -47,59 +41,47 @@ public final class MixinRefmapHelper {
 
     }
 
-    public static boolean addRefmapName(String filename, String mixinVersion, Path outputPath) {
-        File output = outputPath.toFile();
-        Set<String> mixinFilenames = findMixins(output, true);
-
-        if (mixinFilenames.size() > 0) {
-            return ZipUtil.transformEntries(
-                    output,
-                    mixinFilenames.stream()
-                            .map((f) -> new ZipEntryTransformerEntry(f, new StringZipEntryTransformer("UTF-8") {
-                                @Override
-                                protected String transform(ZipEntry zipEntry, String input) throws IOException {
-                                    JsonObject json = GSON.fromJson(input, JsonObject.class);
-                                    if (!json.has("refmap")) {
-                                        json.addProperty("refmap", filename);
-                                    }
-                                    if (!json.has("minVersion") && mixinVersion != null) {
-                                        json.addProperty("minVersion", mixinVersion);
-                                    }
-                                    return GSON.toJson(json);
-                                }
-                            })).toArray(ZipEntryTransformerEntry[]::new)
-            );
-        } else {
-            return false;
-        }
-    }
+    /**
+     * Add the refmap name (and minimum Mixin version) to any of the given mixin configs written by the given consumer which are missing them
+     *
+     * @see JarMetadata#getMixinConfigs()
+     */
+    public static BooleanSupplier addRefmapName(String filename, String mixinVersion, Collection<String> mixinConfigs, TransformingOutputConsumer consumer) {
+        AtomicBoolean transformed = new AtomicBoolean();
 
-    private static Set<String> findMixins(File output, boolean onlyWithoutRefmap) {
-        // first, identify all of the mixin files
-        Set<String> mixinFilename = new HashSet<>();
-        // TODO: this is a lovely hack
-        ZipUtil.iterate(output, (stream, entry) -> {
-            if (!entry.isDirectory() && entry.getName().endsWith(".json") && !entry.getName().contains("/") && !entry.getName().contains("\\")) {
-                // JSON file in root directory
-                try (InputStreamReader inputStreamReader = new InputStreamReader(stream)) {
-                    JsonObject json = GSON.fromJson(inputStreamReader, JsonObject.class);
+        consumer.addTransformer(mixinConfigs::contains, data -> {
+            JsonObject json;
+            try {
+                json = GSON.fromJson(new String(data, StandardCharsets.UTF_8), JsonObject.class);
+            } catch (JsonParseException e) {
+                return data;
+            }
 
-                    if (json != null) {
-                        boolean hasMixins = json.has("mixins") && json.get("mixins").isJsonArray();
-                        boolean hasClient = json.has("client") && json.get("client").isJsonArray();
-                        boolean hasServer = json.has("server") && json.get("server").isJsonArray();
+            if (!isMixinConfig(json) || json.has("refmap") && json.has("minVersion")) {
+                return data;
+            }
 
-                        if (json.has("package") && (hasMixins || hasClient || hasServer)) {
-                            if (!onlyWithoutRefmap || !json.has("refmap") || !json.has("minVersion")) {
-                                mixinFilename.add(entry.getName());
-                            }
-                        }
-                    }
-                } catch (Exception e) {
-                    // ...
-                }
+            if (!json.has("refmap")) {
+                json.addProperty("refmap", filename);
+            }
+            if (!json.has("minVersion") && mixinVersion != null) {
+                json.addProperty("minVersion", mixinVersion);
             }
+
+            transformed.set(true);
+            return GSON.toJson(json).getBytes(StandardCharsets.UTF_8);
         });
-        return mixinFilename;
+
+        return transformed::get;
+    }
+
+    static boolean isMixinConfig(JsonObject json) {
+        if (json == null) return false;
+
+        boolean hasMixins = json.has("mixins") && json.get("mixins").isJsonArray();
+        boolean hasClient = json.has("client") && json.get("client").isJsonArray();
+        boolean hasServer = json.has("server") && json.get("server").isJsonArray();
+
+        return json.has("package") && (hasMixins || hasClient || hasServer);
     }
 }
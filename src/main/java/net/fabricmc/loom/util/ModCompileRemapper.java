@@ -26,85 +26,152 @@ package net.fabricmc.loom.util;
 
 import net.fabricmc.loom.LoomGradleExtension;
 import net.fabricmc.loom.util.ModProcessor;
+import net.fabricmc.loom.util.ModProcessor.ModJob;
 import net.fabricmc.loom.util.SourceRemapper;
 
 import org.gradle.api.Project;
 import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.artifacts.ConfigurationContainer;
 import org.gradle.api.artifacts.dsl.DependencyHandler;
 import org.gradle.api.logging.Logger;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.function.Consumer;
 
 public class ModCompileRemapper {
-	public static void remapDependencies(Project project, String mappingsPrefix, LoomGradleExtension extension, Configuration modCompile, Configuration modCompileRemapped, Configuration regularCompile, Consumer<Runnable> postPopulationScheduler) {
+	/**
+	 * Remap the mods in each of the {@link Constants#MOD_COMPILE_ENTRIES}' source configurations into their remapped configurations
+	 *
+	 * <p>All the mods which need remapping are found first so they can all be remapped together,
+	 * then every dependency is added in the same order as they were found
+	 */
+	public static void remapDependencies(Project project, String mappingsPrefix, LoomGradleExtension extension, Consumer<Runnable> postPopulationScheduler) {
 		Logger logger = project.getLogger();
 		DependencyHandler dependencies = project.getDependencies();
+		ConfigurationContainer configurations = project.getConfigurations();
+
+		List<ModJob> jobs = new ArrayList<>();
+		Set<File> remappedOutputs = new HashSet<>();
+		List<Runnable> additions = new ArrayList<>();
+
+		//What every remapped mod is made with, so any which were made with something different are remapped again
+		String mappingsHash;
+		ModProcessor.ClasspathFingerprints classpathFingerprints;
+		try {
+			mappingsHash = RemapManifest.hash(extension.getMappingsProvider().MAPPINGS_TINY);
+			classpathFingerprints = new ModProcessor.ClasspathFingerprints(project);
+		} catch (IOException e) {
+			throw new RuntimeException("Failed to fingerprint remapping environment", e);
+		}
 
-		for (ArtifactInfo artifact : ArtifactInfo.resolve(modCompile, dependencies)) {
-			String group = artifact.group;
-			String name = artifact.name;
-			String version = artifact.version;
-			String classifier = artifact.classifier;
-
-			File input = artifact.getFile();
-
-			if (!artifact.isFabricMod()) {
-				logger.lifecycle(":providing " + artifact.notation());
-				dependencies.add(regularCompile.getName(), artifact.asNonTransitiveDependency());
-				continue;
-			}
-
-			String remappedLog = group + ':' + name + ':' + version + classifier + " (" + mappingsPrefix + ")";
-			String remappedNotation = "net.fabricmc.mapped:" + mappingsPrefix + '.' + group + '.' + name + ':' + version + classifier;
-			String remappedFilename = mappingsPrefix + '.' + group + '.' + name + '-' + version + classifier.replace(':', '-');
-			logger.lifecycle(":providing " + remappedLog);
-
-			File modStore = extension.getRemappedModCache();
-
-			File output = new File(modStore, remappedFilename + ".jar");
-			if (!output.exists() || input.lastModified() <= 0 || input.lastModified() > output.lastModified()) {
-				//If the output doesn't exist, or appears to be outdated compared to the input we'll remap it
-				try {
-					ModProcessor.processMod(input, output, project, modCompileRemapped);
-				} catch (IOException e) {
-					throw new RuntimeException("Failed to remap mod", e);
+		for (RemappedConfigurationEntry entry : Constants.MOD_COMPILE_ENTRIES) {
+			Configuration modCompile = configurations.getByName(entry.getSourceConfiguration());
+			Configuration modCompileRemapped = configurations.getByName(entry.getRemappedConfiguration());
+			Configuration regularCompile = configurations.getByName(entry.getTargetConfiguration(configurations));
+
+			for (ArtifactInfo artifact : ArtifactInfo.resolve(modCompile, project)) {
+				String group = artifact.group;
+				String name = artifact.name;
+				String version = artifact.version;
+				String classifier = artifact.classifier;
+
+				File input = artifact.getFile();
+
+				if (!artifact.isFabricMod()) {
+					additions.add(() -> {
+						logger.lifecycle(":providing " + artifact.notation());
+						dependencies.add(regularCompile.getName(), artifact.asNonTransitiveDependency());
+					});
+					continue;
 				}
 
-				if (!output.exists()){
-					throw new RuntimeException("Failed to remap mod");
+				String remappedLog = group + ':' + name + ':' + version + classifier + " (" + mappingsPrefix + ")";
+				String remappedNotation = "net.fabricmc.mapped:" + mappingsPrefix + '.' + group + '.' + name + ':' + version + classifier;
+				String remappedFilename = mappingsPrefix + '.' + group + '.' + name + '-' + version + classifier.replace(':', '-');
+
+				File modStore = extension.getRemappedModCache();
+
+				File output = new File(modStore, remappedFilename + ".jar");
+				String classpathFingerprint = classpathFingerprints.of(input);
+				RemapManifest manifest = new RemapManifest(JarMetadata.of(project, input).getHash(), mappingsHash, classpathFingerprint);
+				ModJob job;
+				//If the output doesn't exist, or was made from something other than what it would be now we'll remap it (unless it is already going to be)
+				if (!manifest.isUpToDate(output) && remappedOutputs.add(output)) {
+					RemapManifest.forget(output);
+					jobs.add(job = new ModJob(input, output, modCompileRemapped));
+				} else {
+					job = null;
 				}
 
-				output.setLastModified(input.lastModified());
-			} else {
-				logger.info(output.getName() + " is up to date with " + input.getName());
-			}
+				additions.add(() -> {
+					logger.lifecycle(":providing " + remappedLog);
 
-			ModProcessor.acknowledgeMod(input, output, project, modCompileRemapped);
-			dependencies.add(modCompileRemapped.getName(), dependencies.module(remappedNotation));
-
-			Optional<File> sources = artifact.getSources();
-			if (sources.isPresent()) {
-				postPopulationScheduler.accept(() -> {
-					logger.lifecycle(":providing " + remappedLog + " sources");
-					File remappedSources = new File(modStore, remappedFilename + "-sources.jar");
+					if (job != null) {
+						if (!output.exists()){
+							throw new RuntimeException("Failed to remap mod");
+						}
 
-					if (!remappedSources.exists() || sources.get().lastModified() <= 0 || sources.get().lastModified() > remappedSources.lastModified()) {
 						try {
-							SourceRemapper.remapSources(project, sources.get(), remappedSources, true);
-
-							//Set the remapped sources creation date to match the sources if we're likely succeeded in making it
-							remappedSources.setLastModified(sources.get().lastModified());
-						} catch (Exception e) {
-							e.printStackTrace();
+							manifest.write(output);
+						} catch (IOException e) {
+							throw new RuntimeException("Failed to write remapping manifest for " + output, e);
 						}
+						ModProcessor.addNestedMods(job, project);
 					} else {
-						logger.info(remappedSources.getName() + " is up to date with " + sources.get().getName());
+						logger.info(output.getName() + " is up to date with " + input.getName());
+					}
+
+					ModProcessor.acknowledgeMod(input, output, project, modCompileRemapped);
+					dependencies.add(modCompileRemapped.getName(), dependencies.module(remappedNotation));
+
+					Optional<File> sources = artifact.getSources();
+					if (sources.isPresent()) {
+						postPopulationScheduler.accept(() -> {
+							logger.lifecycle(":providing " + remappedLog + " sources");
+							File remappedSources = new File(modStore, remappedFilename + "-sources.jar");
+							RemapManifest sourcesManifest = makeManifest(sources.get(), mappingsHash, classpathFingerprint);
+
+							if (!sourcesManifest.isUpToDate(remappedSources)) {
+								try {
+									RemapManifest.forget(remappedSources);
+									SourceRemapper.remapSources(project, sources.get(), remappedSources, true);
+
+									//Only record the remapped sources as made if we're likely succeeded in making it
+									sourcesManifest.write(remappedSources);
+								} catch (Exception e) {
+									e.printStackTrace();
+								}
+							} else {
+								logger.info(remappedSources.getName() + " is up to date with " + sources.get().getName());
+							}
+						});
 					}
 				});
 			}
 		}
+
+		if (!jobs.isEmpty()) {
+			try {
+				ModProcessor.processMods(jobs, project);
+			} catch (IOException e) {
+				throw new RuntimeException("Failed to remap mods", e);
+			}
+		}
+
+		additions.forEach(Runnable::run);
+	}
+
+	private static RemapManifest makeManifest(File input, String mappingsHash, String classpathFingerprint) {
+		try {
+			return new RemapManifest(input, mappingsHash, classpathFingerprint);
+		} catch (IOException e) {
+			throw new RuntimeException("Failed to hash " + input, e);
+		}
 	}
 }
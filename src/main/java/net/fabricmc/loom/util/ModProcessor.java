@@ -24,76 +24,136 @@
 
 package net.fabricmc.loom.util;
 
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import com.google.gson.Gson;
-import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import net.fabricmc.loom.LoomGradleExtension;
-import net.fabricmc.loom.providers.MappingsProvider;
 import net.fabricmc.loom.providers.MinecraftMappedProvider;
-import net.fabricmc.tinyremapper.OutputConsumerPath;
 import net.fabricmc.tinyremapper.TinyRemapper;
-import org.apache.commons.io.IOUtils;
 import org.gradle.api.Project;
 import org.gradle.api.artifacts.Configuration;
-import org.zeroturnaround.zip.ZipUtil;
 import org.zeroturnaround.zip.commons.FileUtils;
-import org.zeroturnaround.zip.transform.StringZipEntryTransformer;
-import org.zeroturnaround.zip.transform.ZipEntryTransformerEntry;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
-import java.util.zip.ZipEntry;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class ModProcessor {
 	private static final Gson GSON = new Gson();
 
-	public static void processMod(File input, File output, Project project, Configuration config) throws IOException {
-		if(output.exists()){
-			output.delete();
+	/** A mod to be remapped from input to output, along with any mods found nested within it which are to be added to config */
+	public static class ModJob {
+		public final File input, output;
+		final Configuration config;
+		final List<ModJob> nested = new ArrayList<>();
+
+		public ModJob(File input, File output, Configuration config) {
+			this.input = input;
+			this.output = output;
+			this.config = config;
+		}
+	}
+
+	/**
+	 * Remap all the given mods, followed by any nested jars they have (if {@link LoomGradleExtension#extractJars} is set)
+	 *
+	 * <p>Mods with classes in common are remapped in separate passes, then the mods in each pass are split into groups by size which are
+	 * each remapped at the same time, as many groups as {@link LoomGradleExtension#modRemapParallelism} and the free memory allows. The nested jars are not added
+	 * to their configurations, that is left to {@link #addNestedMods(ModJob, Project)} to do in order
+	 */
+	public static void processMods(List<ModJob> jobs, Project project) throws IOException {
+		LoomGradleExtension extension = project.getExtensions().getByType(LoomGradleExtension.class);
+		RemapContext context = new RemapContext(project, extension);
+
+		for (List<ModJob> round = jobs; !round.isEmpty();) {
+			for (ModJob job : round) {
+				if (job.output.exists()) {
+					job.output.delete();
+				}
+			}
+
+			remapRound(round, context, project, extension.modRemapParallelism);
+
+			List<ModJob> nested = new ArrayList<>();
+			//Enable this if you want your nested jars to be extracted, this will extract **all** jars
+			if (extension.extractJars) {
+				Set<File> outputs = new HashSet<>();
+
+				//Done one after the other as different mods are free to nest jars with the same name
+				for (ModJob job : round) {
+					handleNestedJars(job, project);
+
+					for (ModJob child : job.nested) {
+						//Jars with the same name all end up in the same place, so only need remapping once
+						if (outputs.add(child.output)) nested.add(child);
+					}
+				}
+			}
+			round = nested;
 		}
-		remapJar(input, output, project);
-		//Enable this if you want your nested jars to be extracted, this will extract **all** jars
-		if(project.getExtensions().getByType(LoomGradleExtension.class).extractJars){
-			handleNestedJars(input, project, config);
+	}
+
+	/** Add the remapped nested jars of the given job (and any nested within them) to the configuration of the mod they were in */
+	public static void addNestedMods(ModJob job, Project project) {
+		for (ModJob nested : job.nested) {
+			addNestedMods(nested, project);
+
+			if (!nested.output.exists()) {
+				throw new RuntimeException("Failed to find processed nested jar");
+			}
+
+			//Add the project right onto the remapped mods, hopefully this works
+			project.getDependencies().add(job.config.getName(), project.files(nested.output));
 		}
-		//Always strip the nested jars
-		stripNestedJars(output);
 	}
 
 	public static void acknowledgeMod(File input, File output, Project project, Configuration config) {
 		readInstallerJson(input, project);
 	}
 
-	private static void handleNestedJars(File input, Project project, Configuration config) throws IOException {
-		JarFile jarFile = new JarFile(input);
-		JarEntry modJsonEntry = jarFile.getJarEntry("fabric.mod.json");
-		if(modJsonEntry == null){
-			jarFile.close();
+	private static void handleNestedJars(ModJob job, Project project) throws IOException {
+		List<String> nestedJars = JarMetadata.of(project, job.input).getNestedJars();
+		if (nestedJars.isEmpty()) {
 			return;
 		}
-		try(InputStream inputStream = jarFile.getInputStream(modJsonEntry)){
-			JsonObject json = GSON.fromJson(new InputStreamReader(inputStream), JsonObject.class);
-			if(json == null || !json.has("jars")){
-				return;
-			}
-			JsonArray jsonArray = json.getAsJsonArray("jars");
-			for (int i = 0; i < jsonArray.size(); i++) {
-				JsonObject jsonObject = jsonArray.get(i).getAsJsonObject();
-				String fileName = jsonObject.get("file").getAsString();
-				project.getLogger().lifecycle(String.format("Found %s nested in %s", fileName, input.getName()));
-				processNestedJar(jarFile, fileName, project, config);
+
+		try (JarFile jarFile = new JarFile(job.input)) {
+			for (String fileName : nestedJars) {
+				project.getLogger().lifecycle(String.format("Found %s nested in %s", fileName, job.input.getName()));
+				job.nested.add(extractNestedJar(jarFile, fileName, project, job.config));
 			}
 		}
 	}
 
-	private static void processNestedJar(JarFile parentJar, String fileName, Project project, Configuration config) throws IOException {
+	private static ModJob extractNestedJar(JarFile parentJar, String fileName, Project project, Configuration config) throws IOException {
 		LoomGradleExtension extension = project.getExtensions().getByType(LoomGradleExtension.class);
 
 		JarEntry entry = parentJar.getJarEntry(fileName);
@@ -107,78 +167,326 @@ public class ModProcessor {
 		}
 		File remappedFile = new File(extension.getRemappedModCache(), fileName.substring(fileName.lastIndexOf("/")));
 
-		processMod(nestedFile, remappedFile, project, config);
+		return new ModJob(nestedFile, remappedFile, config);
+	}
+
+	private static void stripNestedJars(TransformingOutputConsumer consumer){
+		//Strip out all contained jar info as we dont want loader to try and load the jars contained in dev.
+		consumer.addTransformer("fabric.mod.json", data -> {
+			JsonObject json = GSON.fromJson(new String(data, StandardCharsets.UTF_8), JsonObject.class);
+			json.remove("jars");
+			return GSON.toJson(json).getBytes(StandardCharsets.UTF_8);
+		});
+	}
+
+	/** Everything about the remapping environment which is the same for every mod, worked out up front as the project isn't thread safe */
+	private static class RemapContext {
+		public final TinyRemapperMappingsHelper.Prepared mappings;
+		public final Path[] libraries;
+		public final List<File> modCompiles;
+
+		RemapContext(Project project, LoomGradleExtension extension) throws IOException {
+			mappings = TinyRemapperMappingsHelper.prepare(extension.getMappingsProvider().getMappings(), "intermediary", "named");
+			libraries = libraries(project, extension);
+			modCompiles = modCompiles(project);
+		}
+
+		static Path[] libraries(Project project, LoomGradleExtension extension) throws IOException {
+			return ClasspathIndex.skeletons(project, libraryFiles(extension).stream().map(File::toPath).toArray(Path[]::new));
+		}
+
+		static List<File> libraryFiles(LoomGradleExtension extension) {
+			MinecraftMappedProvider mappedProvider = extension.getMinecraftMappedProvider();
 
-		if(!remappedFile.exists()){
-			throw new RuntimeException("Failed to find processed nested jar");
+			return Stream.concat(Stream.of(mappedProvider.MINECRAFT_INTERMEDIARY_JAR), mappedProvider.getMapperPaths().stream()).collect(Collectors.toList());
 		}
 
-		//Add the project right onto the remapped mods, hopefully this works
-		project.getDependencies().add(config.getName(), project.files(remappedFile));
+		static List<File> modCompiles(Project project) {
+			return Constants.MOD_COMPILE_ENTRIES.stream().map(RemappedConfigurationEntry::getSourceConfiguration).flatMap(sourceConfig -> {
+				return project.getConfigurations().getByName(sourceConfig).getFiles().stream();
+			}).distinct().collect(Collectors.toList());
+		}
 	}
 
-	private static void stripNestedJars(File file){
-		//Strip out all contained jar info as we dont want loader to try and load the jars contained in dev.
-		ZipUtil.transformEntry(file, new ZipEntryTransformerEntry("fabric.mod.json", new StringZipEntryTransformer() {
-			@Override
-			protected String transform(ZipEntry zipEntry, String input) throws IOException {
-				JsonObject json = GSON.fromJson(input, JsonObject.class);
-				json.remove("jars");
-				return GSON.toJson(json);
+	/**
+	 * Fingerprints of what each mod is remapped against: Minecraft, its libraries and only the mod compile jars which the mod refers to classes from
+	 * (along with any those jars refer to in turn), so changing one mod doesn't make every other mod need remapping again
+	 *
+	 * <p>All of this comes from {@link JarMetadata} and cached hashes, so nothing is read from jars which haven't changed
+	 */
+	public static class ClasspathFingerprints {
+		private final Project project;
+		private final String libraries;
+		private final Map<String, List<File>> definers = new HashMap<>();
+
+		public ClasspathFingerprints(Project project) throws IOException {
+			this.project = project;
+
+			Hasher hasher = Hashing.sha256().newHasher();
+			for (File library : RemapContext.libraryFiles(project.getExtensions().getByType(LoomGradleExtension.class))) {
+				hasher.putString(library.exists() ? RemapManifest.hash(library) : "missing", StandardCharsets.UTF_8);
 			}
-		}));
-	}
+			libraries = hasher.hash().toString();
 
-	private static void remapJar(File input, File output, Project project) throws IOException {
-		LoomGradleExtension extension = project.getExtensions().getByType(LoomGradleExtension.class);
-		String fromM = "intermediary";
-		String toM = "named";
+			for (File jar : RemapContext.modCompiles(project)) {
+				if (!jar.isFile()) continue;
+				File key = jar.getAbsoluteFile();
 
-		MinecraftMappedProvider mappedProvider = extension.getMinecraftMappedProvider();
-		MappingsProvider mappingsProvider = extension.getMappingsProvider();
-
-		Path inputPath = input.getAbsoluteFile().toPath();
-		Path mc = mappedProvider.MINECRAFT_INTERMEDIARY_JAR.toPath();
-		Path[] mcDeps = mappedProvider.getMapperPaths().stream()
-			.map(File::toPath)
-			.toArray(Path[]::new);
-		Path[] modCompiles = Constants.MOD_COMPILE_ENTRIES.stream().map(RemappedConfigurationEntry::getSourceConfiguration).flatMap(sourceConfig -> {
-			return project.getConfigurations().getByName(sourceConfig).getFiles().stream()
-				.filter(f -> !f.equals(input))
-				.map(p -> {
-					if (p.equals(input)) {
-						return inputPath;
-					} else {
-						return p.toPath();
+				for (String name : JarMetadata.of(project, key).getClasses()) {
+					definers.computeIfAbsent(name, k -> new ArrayList<>(1)).add(key);
+				}
+			}
+		}
+
+		/** The fingerprint of what the given mod would be remapped against */
+		public String of(File mod) {
+			File self = mod.getAbsoluteFile();
+			Set<File> used = new HashSet<>();
+			Set<String> hashes = new TreeSet<>();
+
+			for (Deque<File> pending = new ArrayDeque<>(Collections.singleton(self)); !pending.isEmpty();) {
+				for (String reference : JarMetadata.of(project, pending.remove()).getReferences()) {
+					for (File jar : definers.getOrDefault(reference, Collections.emptyList())) {
+						if (!jar.equals(self) && used.add(jar)) {
+							pending.add(jar);
+							hashes.add(JarMetadata.of(project, jar).getHash());
+						}
 					}
-				});
-		}).distinct().toArray(Path[]::new);
+				}
+			}
+
+			Hasher hasher = Hashing.sha256().newHasher().putString(libraries, StandardCharsets.UTF_8);
+			for (String hash : hashes) {
+				hasher.putString(hash, StandardCharsets.UTF_8);
+			}
+			return hasher.hash().toString();
+		}
+	}
+
+	private static void remapRound(List<ModJob> round, RemapContext context, Project project, int parallelism) throws IOException {
+		//Every mod in the round is on the classpath of the others, regardless of which group they end up in
+		File[] modClasspath = Stream.concat(context.modCompiles.stream(), round.stream().map(job -> job.input)).distinct().toArray(File[]::new);
+		Path[] modSkeletons = ClasspathIndex.skeletons(project, Arrays.stream(modClasspath).map(File::toPath).toArray(Path[]::new));
+
+		Map<File, Path> skeletons = new LinkedHashMap<>();
+		long classpathSize = 0;
+		for (int i = 0; i < modClasspath.length; i++) {
+			skeletons.put(modClasspath[i], modSkeletons[i]);
+			classpathSize += modSkeletons[i].toFile().length();
+		}
+		for (Path library : context.libraries) {
+			classpathSize += library.toFile().length();
+		}
+
+		Map<ModJob, List<String>> classNames = new HashMap<>();
+		for (ModJob job : round) {
+			project.getLogger().lifecycle(":remapping " + job.input.getName() + " (TinyRemapper, intermediary -> named)");
+			classNames.put(job, JarMetadata.of(project, job.input).getClasses());
+		}
+
+		List<List<ModJob>> passes = separateOverlaps(round, classNames);
+		if (passes.size() > 1) {
+			project.getLogger().info("Remapping " + round.size() + " mods in " + passes.size() + " passes as some have classes in common");
+		}
+
+		for (List<ModJob> pass : passes) {
+			remapPass(pass, context, skeletons, classNames, classpathSize, project, parallelism);
+		}
+	}
 
+	/**
+	 * Split the given jobs into passes where no two mods in the same pass have a class with the same name
+	 *
+	 * <p>The remapper only keeps one copy of each class it is given, so mods with classes in common (such as from shading the same library,
+	 * or nesting the same jar) have to be remapped separately to each end up with their own copy
+	 */
+	private static List<List<ModJob>> separateOverlaps(List<ModJob> jobs, Map<ModJob, List<String>> classNames) {
+		List<List<ModJob>> passes = new ArrayList<>();
+		List<Set<String>> passClasses = new ArrayList<>();
 
-		project.getLogger().lifecycle(":remapping " + input.getName() + " (TinyRemapper, " + fromM + " -> " + toM + ")");
+		job: for (ModJob job : jobs) {
+			List<String> names = classNames.get(job);
+
+			for (int i = 0; i < passes.size(); i++) {
+				Set<String> existing = passClasses.get(i);
+
+				if (names.stream().noneMatch(existing::contains)) {
+					passes.get(i).add(job);
+					existing.addAll(names);
+					continue job;
+				}
+			}
+
+			passes.add(new ArrayList<>(Collections.singletonList(job)));
+			passClasses.add(new HashSet<>(names));
+		}
+
+		return passes;
+	}
+
+	private static void remapPass(List<ModJob> pass, RemapContext context, Map<File, Path> skeletons, Map<ModJob, List<String>> classNames,
+			long classpathSize, Project project, int parallelism) throws IOException {
+		List<List<ModJob>> groups = partition(pass, pickParallelism(parallelism, classpathSize, context.mappings.size(), pass));
+		int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / groups.size());
+
+		if (groups.size() == 1) {
+			remapJars(pass, context, skeletons, classNames, threads).forEach(project.getLogger()::info);
+			return;
+		}
+
+		project.getLogger().info("Remapping " + pass.size() + " mods in " + groups.size() + " groups");
+		ExecutorService executor = Executors.newFixedThreadPool(groups.size());
+
+		try {
+			List<Future<List<String>>> remaps = new ArrayList<>();
+
+			for (List<ModJob> group : groups) {
+				remaps.add(executor.submit(() -> remapJars(group, context, skeletons, classNames, threads)));
+			}
+
+			//The project isn't thread safe, so anything to say is only said once back on this thread
+			for (Future<List<String>> remap : remaps) {
+				remap.get().forEach(project.getLogger()::info);
+			}
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+			throw new RuntimeException("Failed to remap mods", e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted remapping mods", e);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/** A rough guess of how many bytes of heap the remapper needs for each byte of jar it reads */
+	static final int HEAP_PER_JAR_BYTE = 8;
+	/** A rough guess of how many bytes of heap each remapper's own copy of the (already prepared) mappings needs per mapping */
+	static final int HEAP_PER_MAPPING = 128;
+
+	/** How many groups the given mods can be split into, with each group reading the whole classpath and all the mappings alongside its share of the mods */
+	private static int pickParallelism(int parallelism, long classpathSize, int mappings, List<ModJob> jobs) {
+		Runtime runtime = Runtime.getRuntime();
+		int limit = parallelism > 0 ? parallelism : runtime.availableProcessors();
+
+		long free = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+		long spare = free - jobs.stream().mapToLong(job -> job.input.length()).sum() * HEAP_PER_JAR_BYTE;
+		long perGroup = Math.max(1, classpathSize * HEAP_PER_JAR_BYTE + (long) mappings * HEAP_PER_MAPPING);
+		limit = (int) Math.min(limit, spare / perGroup);
+
+		return Math.max(1, Math.min(limit, jobs.size()));
+	}
+
+	/** Split the given jobs into the given number of groups, with the largest mods spread out first to keep the groups even */
+	private static List<List<ModJob>> partition(List<ModJob> jobs, int count) {
+		List<List<ModJob>> groups = new ArrayList<>(count);
+		long[] sizes = new long[count];
+		for (int i = 0; i < count; i++) {
+			groups.add(new ArrayList<>());
+		}
+
+		List<ModJob> bySize = new ArrayList<>(jobs);
+		bySize.sort(Comparator.comparingLong((ModJob job) -> job.input.length()).reversed());
+
+		for (ModJob job : bySize) {
+			int smallest = 0;
+			for (int i = 1; i < count; i++) {
+				if (sizes[i] < sizes[smallest]) smallest = i;
+			}
+
+			groups.get(smallest).add(job);
+			sizes[smallest] += job.input.length();
+		}
+
+		return groups;
+	}
+
+	/**
+	 * Remap the given mods together in a single remapper, with every other mod in the round on the classpath
+	 *
+	 * @return Anything to log about the remapping, which is left to the caller as this can be run on any thread
+	 */
+	private static List<String> remapJars(List<ModJob> jobs, RemapContext context, Map<File, Path> skeletons, Map<ModJob, List<String>> classNames, int threads) throws IOException {
+		String toM = "named";
+
+		Set<File> inputs = jobs.stream().map(job -> job.input).collect(Collectors.toSet());
+		Path[] inputPaths = jobs.stream().map(job -> job.input.getAbsoluteFile().toPath()).distinct().toArray(Path[]::new);
+		Path[] modCompiles = skeletons.entrySet().stream().filter(entry -> !inputs.contains(entry.getKey())).map(Entry::getValue).distinct().toArray(Path[]::new);
 
 		TinyRemapper remapper = TinyRemapper.newRemapper()
-			.withMappings(TinyRemapperMappingsHelper.create(mappingsProvider.getMappings(), fromM, toM))
+			.withMappings(context.mappings)
+			.threads(threads)
 			.build();
 
-		try (OutputConsumerPath outputConsumer = new OutputConsumerPath(Paths.get(output.getAbsolutePath()))) {
-			outputConsumer.addNonClassFiles(inputPath);
+		List<TransformingOutputConsumer> outputConsumers = new ArrayList<>();
+		List<BooleanSupplier> foundATs = new ArrayList<>();
+		try {
 			remapper.readClassPath(modCompiles);
-			remapper.readClassPath(mc);
-			remapper.readClassPath(mcDeps);
-			remapper.readInputs(inputPath);
-			remapper.apply(outputConsumer);
+			remapper.readClassPath(context.libraries);
+			remapper.readInputs(inputPaths);
+
+			//The remapper doesn't say which input each class came from, so they have to be matched up by their remapped names
+			Map<String, List<TransformingOutputConsumer>> classOutputs = new HashMap<>();
+			for (ModJob job : jobs) {
+				TransformingOutputConsumer outputConsumer = new TransformingOutputConsumer(Paths.get(job.output.getAbsolutePath()));
+				outputConsumers.add(outputConsumer);
+
+				//Any post processing happens as the jar is written, so it only needs to be written once
+				foundATs.add(AccessTransformerHelper.deobfATs(remapper, outputConsumer));
+				//Always strip the nested jars
+				stripNestedJars(outputConsumer);
+
+				for (String className : classNames.get(job)) {
+					List<TransformingOutputConsumer> outputs = classOutputs.computeIfAbsent(remapper.getRemapper().map(className), k -> new ArrayList<>(1));
+					if (!outputs.contains(outputConsumer)) outputs.add(outputConsumer);
+				}
+			}
+
+			remapper.apply((name, data) -> {
+				List<TransformingOutputConsumer> outputs = classOutputs.get(name);
+				if (outputs == null) throw new IllegalStateException("Remapped " + name + " which isn't from any of " + inputs);
+
+				for (TransformingOutputConsumer output : outputs) {
+					output.accept(name, data);
+				}
+			});
+
+			//Done once the classes have been remapped so the access transformers can be too
+			for (int i = 0; i < jobs.size(); i++) {
+				outputConsumers.get(i).addNonClassFiles(jobs.get(i).input.getAbsoluteFile().toPath());
+			}
 		} finally {
+			IOException failure = null;
+
+			for (TransformingOutputConsumer outputConsumer : outputConsumers) {
+				try {
+					outputConsumer.close();
+				} catch (IOException e) {
+					if (failure == null) {
+						failure = e;
+					} else {
+						failure.addSuppressed(e);
+					}
+				}
+			}
+
 			remapper.finish();
+			if (failure != null) throw failure;
 		}
 
-		if(!output.exists()){
-			throw new RuntimeException("Failed to remap JAR to " + toM + " file not found: " + output.getAbsolutePath());
-		}
+		List<String> messages = new ArrayList<>();
+		for (int i = 0; i < jobs.size(); i++) {
+			ModJob job = jobs.get(i);
 
-		if (AccessTransformerHelper.deobfATs(remapper, output)) {
-			project.getLogger().info("Found and remapped access transformer in " + input.getName());
+			if(!job.output.exists()){
+				throw new RuntimeException("Failed to remap JAR to " + toM + " file not found: " + job.output.getAbsolutePath());
+			}
+
+			if (foundATs.get(i).getAsBoolean()) {
+				messages.add("Found and remapped access transformer in " + job.input.getName());
+			}
 		}
+		return messages;
 	}
 
 	static void readInstallerJson(File file, Project project){
@@ -186,34 +494,28 @@ public class ModProcessor {
 			LoomGradleExtension extension = project.getExtensions().getByType(LoomGradleExtension.class);
 			String launchMethod = extension.getLoaderLaunchMethod();
 
-			String jsonStr;
+			JarMetadata metadata = JarMetadata.of(project, file);
+			String jsonStr = null;
 			int priority = 0;
 
-			try (JarFile jarFile = new JarFile(file)) {
-				ZipEntry entry = null;
-				if (!launchMethod.isEmpty()) {
-					entry = jarFile.getEntry("fabric-installer." + launchMethod + ".json");
-					if (entry == null) {
-						project.getLogger().warn("Could not find loader launch method '" + launchMethod + "', falling back");
-					}
-				}
-
-				if (entry == null) {
-					entry = jarFile.getEntry("fabric-installer.json");
-					priority++;
-					if (entry == null) {
-						return;
-					}
+			if (!launchMethod.isEmpty()) {
+				jsonStr = metadata.getInstallerJson("fabric-installer." + launchMethod + ".json");
+				if (jsonStr == null) {
+					project.getLogger().warn("Could not find loader launch method '" + launchMethod + "', falling back");
 				}
+			}
 
-				try (InputStream inputstream = jarFile.getInputStream(entry)) {
-					jsonStr = IOUtils.toString(inputstream, StandardCharsets.UTF_8);
+			if (jsonStr == null) {
+				jsonStr = metadata.getInstallerJson("fabric-installer.json");
+				priority++;
+				if (jsonStr == null) {
+					return;
 				}
 			}
 
 			JsonObject jsonObject = GSON.fromJson(jsonStr, JsonObject.class);
 			extension.setInstallerJson(jsonObject, priority);
-		} catch (IOException e) {
+		} catch (UncheckedIOException e) {
 			e.printStackTrace();
 		}
 	}
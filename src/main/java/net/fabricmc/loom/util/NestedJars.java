@@ -39,56 +39,53 @@ import org.gradle.api.artifacts.Configuration;
 import org.gradle.api.artifacts.Dependency;
 import org.gradle.api.artifacts.DependencySet;
 import org.gradle.api.artifacts.ProjectDependency;
+import org.gradle.api.file.FileCollection;
 import org.gradle.api.tasks.bundling.AbstractArchiveTask;
-import org.zeroturnaround.zip.FileSource;
-import org.zeroturnaround.zip.ZipEntrySource;
 import org.zeroturnaround.zip.ZipUtil;
-import org.zeroturnaround.zip.transform.StringZipEntryTransformer;
-import org.zeroturnaround.zip.transform.ZipEntryTransformerEntry;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Path;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
-import java.util.zip.ZipEntry;
 
 public class NestedJars {
 
 	private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
 
-	public static boolean addNestedJars(Project project, Path modJarPath) {
-		if (getContainedJars(project).isEmpty()) {
+	/** Add the jars to be included to those the given consumer writes, along with adding them to the {@code fabric.mod.json} */
+	public static boolean addNestedJars(Project project, TransformingOutputConsumer consumer) throws IOException {
+		List<File> containedJars = getContainedJars(project);
+		if (containedJars.isEmpty()) {
 			return false;
 		}
 
-		File modJar = modJarPath.toFile();
+		for (File file : containedJars) {
+			consumer.addNonClassFile(file.toPath(), "META-INF/jars/" + file.getName());
+		}
 
-		ZipUtil.addOrReplaceEntries(modJar, getContainedJars(project).stream().map(file -> new FileSource("META-INF/jars/" + file.getName(), file)).toArray(ZipEntrySource[]::new));
+		consumer.addTransformer("fabric.mod.json", data -> {
+			JsonObject json = GSON.fromJson(new String(data, StandardCharsets.UTF_8), JsonObject.class);
+			JsonArray nestedJars = json.getAsJsonArray("jars");
+			if (nestedJars == null || !json.has("jars")) {
+				nestedJars = new JsonArray();
+			}
 
-		return ZipUtil.transformEntries(modJar, single(new ZipEntryTransformerEntry("fabric.mod.json", new StringZipEntryTransformer() {
-			@Override
-			protected String transform(ZipEntry zipEntry, String input) throws IOException {
-				JsonObject json = GSON.fromJson(input, JsonObject.class);
-				JsonArray nestedJars = json.getAsJsonArray("jars");
-				if (nestedJars == null || !json.has("jars")) {
-					nestedJars = new JsonArray();
-				}
+			for (File file : containedJars) {
+				JsonObject jsonObject = new JsonObject();
+				jsonObject.addProperty("file", "META-INF/jars/" + file.getName());
+				nestedJars.add(jsonObject);
+			}
 
-				for (File file : getContainedJars(project)) {
-					JsonObject jsonObject = new JsonObject();
-					jsonObject.addProperty("file", "META-INF/jars/" + file.getName());
-					nestedJars.add(jsonObject);
-				}
+			json.add("jars", nestedJars);
 
-				json.add("jars", nestedJars);
+			return GSON.toJson(json).getBytes(StandardCharsets.UTF_8);
+		});
 
-				return GSON.toJson(json);
-			}
-		})));
+		return true;
 	}
 
 	private static List<File> getContainedJars(Project project) {
@@ -101,17 +98,7 @@ public class NestedJars {
 				ProjectDependency projectDependency = (ProjectDependency) dependency;
 				Project dependencyProject = projectDependency.getDependencyProject();
 
-				//TODO change this to allow just normal jar tasks, so a project can have a none loom sub project
-				Collection<Task> remapJarTasks = dependencyProject.getTasksByName("remapJar", false);
-				Collection<Task> jarTasks = dependencyProject.getTasksByName("jar", false);
-
-				for (Task task : remapJarTasks.isEmpty() ? jarTasks : remapJarTasks) {
-					if (task instanceof RemapJarTask) {
-						fileList.add(((RemapJarTask) task).getArchivePath());
-					} else if (task instanceof AbstractArchiveTask) {
-						fileList.add(((AbstractArchiveTask) task).getArchivePath());
-					}
-				}
+				fileList.addAll(getProjectJars(dependencyProject));
 			} else {
 				fileList.addAll(prepareForNesting(configuration.files(dependency), dependency, project));
 			}
@@ -127,6 +114,40 @@ public class NestedJars {
 		return fileList;
 	}
 
+	private static List<File> getProjectJars(Project dependencyProject) {
+		List<File> fileList = new ArrayList<>();
+
+		//TODO change this to allow just normal jar tasks, so a project can have a none loom sub project
+		Collection<Task> remapJarTasks = dependencyProject.getTasksByName("remapJar", false);
+		Collection<Task> jarTasks = dependencyProject.getTasksByName("jar", false);
+
+		for (Task task : remapJarTasks.isEmpty() ? jarTasks : remapJarTasks) {
+			if (task instanceof RemapJarTask) {
+				fileList.add(((RemapJarTask) task).getArchivePath());
+			} else if (task instanceof AbstractArchiveTask) {
+				fileList.add(((AbstractArchiveTask) task).getArchivePath());
+			}
+		}
+
+		return fileList;
+	}
+
+	/** All the jars which could be nested, without turning any of them into mods, so tasks which nest jars can use them as an input */
+	public static FileCollection getNestableJars(Project project) {
+		List<Object> files = new ArrayList<>();
+
+		Configuration configuration = project.getConfigurations().getByName(Constants.INCLUDE);
+		for (Dependency dependency : configuration.getDependencies()) {
+			if (dependency instanceof ProjectDependency) {
+				files.addAll(getProjectJars(((ProjectDependency) dependency).getDependencyProject()));
+			} else {
+				files.add(configuration.fileCollection(dependency));
+			}
+		}
+
+		return project.files(files);
+	}
+
 	//Looks for any deps that require a sub project to be built first
 	public static List<RemapJarTask> getRequiredTasks(Project project){
 		List<RemapJarTask> remapTasks = new ArrayList<>();
@@ -152,7 +173,7 @@ public class NestedJars {
 		List<File> fileList = new ArrayList<>();
 		for(File file : files){
 			//A lib that doesnt have a mod.json, we turn it into a fake mod
-			if(!ZipUtil.containsEntry(file, "fabric.mod.json")){
+			if(!JarMetadata.of(project, file).isFabricMod()){
 				LoomGradleExtension extension = project.getExtensions().getByType(LoomGradleExtension.class);
 				File tempDir = new File(extension.getUserCache(), "temp/modprocessing");
 				if(!tempDir.exists()){
@@ -187,8 +208,4 @@ public class NestedJars {
 
 		return GSON.toJson(jsonObject);
 	}
-
-	private static ZipEntryTransformerEntry[] single(ZipEntryTransformerEntry element) {
-		return new ZipEntryTransformerEntry[]{element};
-	}
 }
@@ -0,0 +1,323 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016, 2017, 2018 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.util;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+/**
+ * A zip file read straight from its central directory, so that entries can be copied into a {@link RawZipWriter} exactly
+ * as they were compressed, rather than being inflated only to be deflated again.
+ *
+ * <p>Zip files which need Zip64 extensions (over 65535 entries or 4GB), or which have names that are neither marked as nor
+ * valid UTF-8, are instead read through a {@link ZipFile}. Their entries can still be read, but will have to be compressed
+ * again when copied.
+ */
+public class RawZipFile implements Closeable {
+	static final int LOCAL_HEADER = 0x04034b50, CENTRAL_HEADER = 0x02014b50, END_HEADER = 0x06054b50;
+	static final int STORED = 0, DEFLATED = 8;
+	/** Entries are marked as having UTF-8 names */
+	static final int UTF8_FLAG = 0x800;
+
+	public static class Entry {
+		public final String name;
+		final int flags, method, time, crc;
+		final long compressedSize, size, offset;
+		/** The entry from the {@link ZipFile} doing the reading, or {@code null} if reading directly */
+		final ZipEntry jdkEntry;
+
+		Entry(String name, int flags, int method, int time, int crc, long compressedSize, long size, long offset) {
+			this.name = name;
+			this.flags = flags;
+			this.method = method;
+			this.time = time;
+			this.crc = crc;
+			this.compressedSize = compressedSize;
+			this.size = size;
+			this.offset = offset;
+			jdkEntry = null;
+		}
+
+		Entry(ZipEntry entry) {
+			name = entry.getName();
+			flags = 0;
+			method = entry.getMethod();
+			time = RawZipWriter.dosTime(entry.getTime());
+			crc = (int) entry.getCrc();
+			compressedSize = entry.getCompressedSize();
+			size = entry.getSize();
+			offset = -1;
+			jdkEntry = entry;
+		}
+
+		public boolean isDirectory() {
+			return name.endsWith("/");
+		}
+	}
+
+	private final Path path;
+	private FileChannel channel;
+	private ZipFile jdkZip;
+	private final List<Entry> entries;
+	private final Map<String, Entry> entryMap = new HashMap<>();
+
+	public RawZipFile(Path path) throws IOException {
+		this.path = path;
+		channel = FileChannel.open(path, StandardOpenOption.READ);
+
+		List<Entry> entries;
+		try {
+			entries = readCentralDirectory();
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+
+		if (entries == null) {
+			channel.close();
+			channel = null;
+
+			//Names without the UTF-8 flag are meant to be code page 437, so anything that isn't valid UTF-8 is taken to be that
+			jdkZip = new ZipFile(path.toFile(), ZipFile.OPEN_READ, Charset.forName("IBM437"));
+			entries = new ArrayList<>(jdkZip.size());
+
+			for (Enumeration<? extends ZipEntry> it = jdkZip.entries(); it.hasMoreElements();) {
+				entries.add(new Entry(it.nextElement()));
+			}
+		}
+
+		this.entries = Collections.unmodifiableList(entries);
+		for (Entry entry : entries) {
+			entryMap.putIfAbsent(entry.name, entry);
+		}
+	}
+
+	/** Read the entries from the central directory, or {@code null} if the zip needs reading by a {@link ZipFile} instead */
+	private List<Entry> readCentralDirectory() throws IOException {
+		long size = channel.size();
+		//The end record is 22 bytes, followed by a comment of at most 65535 bytes
+		int tail = (int) Math.min(size, 22 + 0xFFFF);
+		ByteBuffer end = read(size - tail, tail);
+
+		int endStart = -1;
+		for (int i = tail - 22; i >= 0; i--) {
+			if (end.getInt(i) == END_HEADER) {
+				endStart = i;
+				break;
+			}
+		}
+		if (endStart < 0) throw new ZipException("Unable to find end of central directory in " + path);
+
+		int count = Short.toUnsignedInt(end.getShort(endStart + 10));
+		long directorySize = Integer.toUnsignedLong(end.getInt(endStart + 12));
+		long directoryStart = Integer.toUnsignedLong(end.getInt(endStart + 16));
+		if (count == 0xFFFF || directorySize == 0xFFFFFFFFL || directoryStart == 0xFFFFFFFFL) {
+			return null; //Zip64
+		}
+
+		ByteBuffer directory = read(directoryStart, (int) directorySize);
+		List<Entry> entries = new ArrayList<>(count);
+		CharsetDecoder utf8 = StandardCharsets.UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPORT).onUnmappableCharacter(CodingErrorAction.REPORT);
+
+		for (int i = 0; i < count; i++) {
+			int start = directory.position();
+			if (directory.getInt(start) != CENTRAL_HEADER) throw new ZipException("Corrupt central directory in " + path);
+
+			int flags = Short.toUnsignedInt(directory.getShort(start + 8));
+			int method = Short.toUnsignedInt(directory.getShort(start + 10));
+			int time = directory.getInt(start + 12);
+			int crc = directory.getInt(start + 16);
+			long compressedSize = Integer.toUnsignedLong(directory.getInt(start + 20));
+			long uncompressedSize = Integer.toUnsignedLong(directory.getInt(start + 24));
+			int nameLength = Short.toUnsignedInt(directory.getShort(start + 28));
+			int extraLength = Short.toUnsignedInt(directory.getShort(start + 30));
+			int commentLength = Short.toUnsignedInt(directory.getShort(start + 32));
+			long offset = Integer.toUnsignedLong(directory.getInt(start + 42));
+			if (compressedSize == 0xFFFFFFFFL || uncompressedSize == 0xFFFFFFFFL || offset == 0xFFFFFFFFL) {
+				return null; //Zip64
+			}
+
+			directory.position(start + 46).limit(start + 46 + nameLength);
+			String name;
+			if ((flags & UTF8_FLAG) != 0) {
+				name = StandardCharsets.UTF_8.decode(directory).toString();
+			} else {
+				try {
+					name = utf8.decode(directory).toString();
+				} catch (CharacterCodingException e) {
+					return null; //Neither UTF-8 nor marked as it
+				}
+			}
+			directory.limit(directory.capacity()).position(start + 46 + nameLength + extraLength + commentLength);
+
+			entries.add(new Entry(name, flags, method, time, crc, compressedSize, uncompressedSize, offset));
+		}
+
+		return entries;
+	}
+
+	private ByteBuffer read(long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new ZipException("Unexpected end of " + path);
+			}
+		}
+
+		buffer.flip();
+		return buffer;
+	}
+
+	/** Every entry in the zip, in the order the central directory has them */
+	public List<Entry> entries() {
+		return entries;
+	}
+
+	/** The entry with the given name, or {@code null} if there isn't one */
+	public Entry getEntry(String name) {
+		return entryMap.get(name);
+	}
+
+	private long dataStart(Entry entry) throws IOException {
+		ByteBuffer header = read(entry.offset, 30);
+		if (header.getInt(0) != LOCAL_HEADER) throw new ZipException("Corrupt local header for " + entry.name + " in " + path);
+
+		//The local name and extra field can differ in length from those in the central directory
+		return entry.offset + 30 + Short.toUnsignedInt(header.getShort(26)) + Short.toUnsignedInt(header.getShort(28));
+	}
+
+	/** Whether entries can be copied out exactly as they are compressed, rather than only read */
+	boolean canCopyRaw() {
+		return channel != null;
+	}
+
+	/** Read the uncompressed contents of the given entry, which is safe to do from several threads at once */
+	public byte[] read(Entry entry) throws IOException {
+		byte[] out = jdkZip != null ? readJdk(entry) : readRaw(entry);
+
+		CRC32 crc = new CRC32();
+		crc.update(out);
+		if ((int) crc.getValue() != entry.crc) throw new ZipException("CRC mismatch for " + entry.name + " in " + path);
+
+		return out;
+	}
+
+	private byte[] readJdk(Entry entry) throws IOException {
+		byte[] out = new byte[Math.toIntExact(entry.size)];
+
+		try (InputStream in = jdkZip.getInputStream(entry.jdkEntry)) {
+			new DataInputStream(in).readFully(out);
+		}
+
+		return out;
+	}
+
+	private byte[] readRaw(Entry entry) throws IOException {
+		ByteBuffer data = read(dataStart(entry), (int) entry.compressedSize);
+
+		switch (entry.method) {
+		case STORED:
+			return data.array();
+
+		case DEFLATED: {
+			Inflater inflater = new Inflater(true);
+			try {
+				inflater.setInput(data.array());
+				byte[] out = new byte[(int) entry.size];
+
+				int read = 0;
+				while (read < out.length && !inflater.finished()) {
+					int inflated = inflater.inflate(out, read, out.length - read);
+					if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+					read += inflated;
+				}
+
+				if (read != out.length) throw new ZipException("Truncated entry " + entry.name + " in " + path);
+				return out;
+			} catch (DataFormatException e) {
+				throw new ZipException("Corrupt entry " + entry.name + " in " + path + ": " + e.getMessage());
+			} finally {
+				inflater.end();
+			}
+		}
+
+		default:
+			throw new ZipException("Unsupported compression method " + entry.method + " for " + entry.name + " in " + path);
+		}
+	}
+
+	/** Write the contents of the given entry to the given stream exactly as it is compressed */
+	void copyRaw(Entry entry, OutputStream out) throws IOException {
+		if (!canCopyRaw()) throw new IllegalStateException("Can't copy raw entries from " + path);
+
+		long position = dataStart(entry);
+		long remaining = entry.compressedSize;
+		ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(remaining, 1 << 16));
+
+		while (remaining > 0) {
+			buffer.clear();
+			if (remaining < buffer.capacity()) buffer.limit((int) remaining);
+
+			int read = channel.read(buffer, position);
+			if (read < 0) throw new ZipException("Unexpected end of " + path);
+
+			out.write(buffer.array(), 0, read);
+			position += read;
+			remaining -= read;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (channel != null) channel.close();
+		if (jdkZip != null) jdkZip.close();
+	}
+}
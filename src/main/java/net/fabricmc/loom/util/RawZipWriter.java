@@ -0,0 +1,298 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016, 2017, 2018 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.util;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipException;
+
+/**
+ * Writes a zip file, allowing entries from a {@link RawZipFile} to be copied in byte for byte when they are unchanged so
+ * only what is actually new needs compressing. Zip64 records are written once there are too many entries or too much data
+ * for the original format to hold. Not thread safe.
+ */
+public class RawZipWriter implements Closeable {
+	/** Entries are marked as having their sizes after the data, which is never needed once copied */
+	private static final int DESCRIPTOR_FLAG = 0x8;
+	private static final int VERSION = 20, ZIP64_VERSION = 45;
+	private static final int ZIP64_END_HEADER = 0x06064b50, ZIP64_LOCATOR = 0x07064b50, ZIP64_EXTRA = 0x0001;
+
+	private static class CentralEntry {
+		final byte[] name;
+		final int flags, method, time, crc;
+		final long compressedSize, size, offset;
+
+		CentralEntry(byte[] name, int flags, int method, int time, int crc, long compressedSize, long size, long offset) {
+			this.name = name;
+			this.flags = flags;
+			this.method = method;
+			this.time = time;
+			this.crc = crc;
+			this.compressedSize = compressedSize;
+			this.size = size;
+			this.offset = offset;
+		}
+	}
+
+	/** The data for an entry compressed ahead of being written, which unlike writing can be done on any thread */
+	public static final class Compressed {
+		final byte[] data;
+		final int method, crc;
+		final long size;
+
+		Compressed(byte[] data, int method, int crc, long size) {
+			this.data = data;
+			this.method = method;
+			this.crc = crc;
+			this.size = size;
+		}
+	}
+
+	private static class CountingOutputStream extends FilterOutputStream {
+		long written;
+
+		CountingOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			written++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			written += len;
+		}
+	}
+
+	private final CountingOutputStream out;
+	private final List<CentralEntry> entries = new ArrayList<>();
+	private final Set<String> names = new HashSet<>();
+	private final Deflater deflater = newDeflater();
+	private final int now = dosTime(System.currentTimeMillis());
+
+	public RawZipWriter(Path output) throws IOException {
+		out = new CountingOutputStream(new BufferedOutputStream(Files.newOutputStream(output)));
+	}
+
+	static int dosTime(long time) {
+		Calendar calendar = Calendar.getInstance();
+		calendar.setTimeInMillis(time);
+
+		int year = calendar.get(Calendar.YEAR);
+		if (year < 1980) return (1 << 21) | (1 << 16);
+
+		return (year - 1980) << 25 | (calendar.get(Calendar.MONTH) + 1) << 21 | calendar.get(Calendar.DAY_OF_MONTH) << 16
+				| calendar.get(Calendar.HOUR_OF_DAY) << 11 | calendar.get(Calendar.MINUTE) << 5 | calendar.get(Calendar.SECOND) >> 1;
+	}
+
+	/** Whether an entry has already been written with the given name */
+	public boolean contains(String name) {
+		return names.contains(name);
+	}
+
+	private byte[] claim(String name) throws ZipException {
+		if (!names.add(name)) throw new ZipException("Duplicate entry: " + name);
+		return name.getBytes(StandardCharsets.UTF_8);
+	}
+
+	/** A deflater suitable for {@link #compress(byte[], Deflater)} */
+	public static Deflater newDeflater() {
+		return new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+	}
+
+	/** Compress the given data using the given deflater, which each thread compressing at once needs its own of */
+	public static Compressed compress(byte[] data, Deflater deflater) {
+		CRC32 crc = new CRC32();
+		crc.update(data);
+
+		if (data.length == 0) {
+			return new Compressed(data, RawZipFile.STORED, (int) crc.getValue(), 0);
+		}
+
+		deflater.reset();
+		deflater.setInput(data);
+		deflater.finish();
+
+		ByteArrayOutputStream deflated = new ByteArrayOutputStream(Math.max(32, data.length / 2));
+		byte[] buffer = new byte[1 << 13];
+		while (!deflater.finished()) {
+			deflated.write(buffer, 0, deflater.deflate(buffer));
+		}
+
+		return new Compressed(deflated.toByteArray(), RawZipFile.DEFLATED, (int) crc.getValue(), data.length);
+	}
+
+	/** Compress and write the given data as an entry with the given name */
+	public void write(String name, byte[] data) throws IOException {
+		write(name, compress(data, deflater));
+	}
+
+	/** Write the given already compressed data as an entry with the given name */
+	public void write(String name, Compressed data) throws IOException {
+		write(name, data, now);
+	}
+
+	private void write(String name, Compressed data, int time) throws IOException {
+		byte[] rawName = claim(name);
+
+		CentralEntry entry = new CentralEntry(rawName, RawZipFile.UTF8_FLAG, data.method, time, data.crc, data.data.length, data.size, out.written);
+		writeLocalHeader(entry);
+		out.write(data.data);
+		entries.add(entry);
+	}
+
+	/** Copy the given entry from the given zip, without decompressing it unless the zip can only be read through a {@link java.util.zip.ZipFile} */
+	public void copy(RawZipFile from, RawZipFile.Entry entry) throws IOException {
+		if (!from.canCopyRaw()) {
+			write(entry.name, compress(from.read(entry), deflater), entry.time);
+			return;
+		}
+
+		byte[] rawName = claim(entry.name);
+
+		CentralEntry copy = new CentralEntry(rawName, (entry.flags | RawZipFile.UTF8_FLAG) & ~DESCRIPTOR_FLAG, entry.method, entry.time, entry.crc, entry.compressedSize, entry.size, out.written);
+		writeLocalHeader(copy);
+		from.copyRaw(entry, out);
+		entries.add(copy);
+	}
+
+	private void writeLocalHeader(CentralEntry entry) throws IOException {
+		writeInt(RawZipFile.LOCAL_HEADER);
+		writeShort(VERSION);
+		writeShort(entry.flags);
+		writeShort(entry.method);
+		writeInt(entry.time);
+		writeInt(entry.crc);
+		writeInt((int) entry.compressedSize);
+		writeInt((int) entry.size);
+		writeShort(entry.name.length);
+		writeShort(0); //No extra field
+		out.write(entry.name);
+	}
+
+	private void writeShort(int value) throws IOException {
+		out.write(value & 0xFF);
+		out.write((value >>> 8) & 0xFF);
+	}
+
+	private void writeInt(int value) throws IOException {
+		writeShort(value & 0xFFFF);
+		writeShort(value >>> 16);
+	}
+
+	private void writeLong(long value) throws IOException {
+		writeInt((int) value);
+		writeInt((int) (value >>> 32));
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			long directoryStart = out.written;
+
+			for (CentralEntry entry : entries) {
+				//Entries are always under 4GB, but they can start beyond it
+				boolean zip64 = entry.offset >= 0xFFFFFFFFL;
+
+				writeInt(RawZipFile.CENTRAL_HEADER);
+				writeShort(zip64 ? ZIP64_VERSION : VERSION); //Made by
+				writeShort(zip64 ? ZIP64_VERSION : VERSION); //Needed to extract
+				writeShort(entry.flags);
+				writeShort(entry.method);
+				writeInt(entry.time);
+				writeInt(entry.crc);
+				writeInt((int) entry.compressedSize);
+				writeInt((int) entry.size);
+				writeShort(entry.name.length);
+				writeShort(zip64 ? 12 : 0); //Extra field length
+				writeShort(0); //No comment
+				writeShort(0); //Disk number
+				writeShort(0); //Internal attributes
+				writeInt(0); //External attributes
+				writeInt(zip64 ? 0xFFFFFFFF : (int) entry.offset);
+				out.write(entry.name);
+
+				if (zip64) {
+					writeShort(ZIP64_EXTRA);
+					writeShort(8);
+					writeLong(entry.offset);
+				}
+			}
+
+			long directorySize = out.written - directoryStart;
+			boolean zip64 = entries.size() >= 0xFFFF || directoryStart >= 0xFFFFFFFFL || directorySize >= 0xFFFFFFFFL;
+
+			if (zip64) {
+				long zip64End = out.written;
+
+				writeInt(ZIP64_END_HEADER);
+				writeLong(44); //Size of the rest of the record
+				writeShort(ZIP64_VERSION); //Made by
+				writeShort(ZIP64_VERSION); //Needed to extract
+				writeInt(0); //Disk number
+				writeInt(0); //Disk with the central directory
+				writeLong(entries.size());
+				writeLong(entries.size());
+				writeLong(directorySize);
+				writeLong(directoryStart);
+
+				writeInt(ZIP64_LOCATOR);
+				writeInt(0); //Disk with the Zip64 end record
+				writeLong(zip64End);
+				writeInt(1); //Total disks
+			}
+
+			writeInt(RawZipFile.END_HEADER);
+			writeShort(0); //Disk number
+			writeShort(0); //Disk with the central directory
+			writeShort(zip64 ? 0xFFFF : entries.size());
+			writeShort(zip64 ? 0xFFFF : entries.size());
+			writeInt(zip64 ? 0xFFFFFFFF : (int) directorySize);
+			writeInt(zip64 ? 0xFFFFFFFF : (int) directoryStart);
+			writeShort(0); //No comment
+		} finally {
+			deflater.end();
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,134 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016, 2017, 2018 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import net.fabricmc.loom.LoomGradleExtension;
+import net.fabricmc.tinyremapper.TinyRemapper;
+
+/**
+ * A record of what a remapped jar in {@link LoomGradleExtension#getRemappedModCache()} was made from, kept alongside it
+ * so whether the jar is up to date is decided by its contents rather than file modification times.
+ *
+ * <p>This means a restored cache with fresh modification times is still used, whilst one made with different mappings or
+ * against a different classpath is not.
+ */
+public class RemapManifest {
+	/** Bumped whenever a change to Loom changes what is produced from the same inputs */
+	private static final int FORMAT = 2;
+	private static final Gson GSON = new Gson();
+	private static final Map<File, Hashed> HASHED = new ConcurrentHashMap<>();
+
+	private static class Hashed {
+		public final long size, modified;
+		public final String hash;
+
+		Hashed(long size, long modified, String hash) {
+			this.size = size;
+			this.modified = modified;
+			this.hash = hash;
+		}
+	}
+
+	public final String input, mappings, classpath, tool;
+
+	public RemapManifest(File input, String mappings, String classpath) throws IOException {
+		this(hash(input), mappings, classpath);
+	}
+
+	public RemapManifest(String inputHash, String mappings, String classpath) {
+		this(inputHash, mappings, classpath, toolVersion());
+	}
+
+	private RemapManifest(String input, String mappings, String classpath, String tool) {
+		this.input = input;
+		this.mappings = mappings;
+		this.classpath = classpath;
+		this.tool = tool;
+	}
+
+	static String toolVersion() {
+		String remapper = TinyRemapper.class.getPackage().getImplementationVersion();
+		return FORMAT + "/" + (remapper != null ? remapper : "unknown");
+	}
+
+	/** The SHA-256 of the given file's contents, only hashed again if its size or modification time have changed since it was last hashed */
+	public static String hash(File file) throws IOException {
+		File key = file.getAbsoluteFile();
+		long size = key.length(), modified = key.lastModified();
+
+		Hashed known = HASHED.get(key);
+		if (known != null && known.size == size && known.modified == modified) return known.hash;
+
+		String hash = Files.asByteSource(key).hash(Hashing.sha256()).toString();
+		HASHED.put(key, new Hashed(size, modified, hash));
+		return hash;
+	}
+
+	private static File manifestFor(File output) {
+		return new File(output.getParentFile(), output.getName() + ".manifest");
+	}
+
+	/** Whether the given output exists and was last made from the same things as this */
+	public boolean isUpToDate(File output) {
+		File manifest = manifestFor(output);
+		if (!output.exists() || !manifest.exists()) return false;
+
+		RemapManifest existing;
+		try (Reader reader = Files.newReader(manifest, StandardCharsets.UTF_8)) {
+			existing = GSON.fromJson(reader, RemapManifest.class);
+		} catch (IOException | JsonParseException e) {
+			return false; //Can't be sure what the output was made from, so safest to make it again
+		}
+
+		return existing != null && Objects.equals(input, existing.input) && Objects.equals(mappings, existing.mappings)
+				&& Objects.equals(classpath, existing.classpath) && Objects.equals(tool, existing.tool);
+	}
+
+	/** Record that the given output has been made from the same things as this */
+	public void write(File output) throws IOException {
+		try (Writer writer = Files.newWriter(manifestFor(output), StandardCharsets.UTF_8)) {
+			GSON.toJson(this, writer);
+		}
+	}
+
+	/** Forget what the given output was made from, so it won't be up to date until it is made again */
+	public static void forget(File output) {
+		manifestFor(output).delete();
+	}
+}
@@ -24,15 +24,46 @@
 
 package net.fabricmc.loom.util;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import net.fabricmc.mappings.*;
 import net.fabricmc.tinyremapper.IMappingProvider;
 import net.fabricmc.tinyremapper.MemberInstance;
 
 public class TinyRemapperMappingsHelper {
+	/** Mappings which have already been worked out, so several remappers can be given them without each working them out again */
+	public static final class Prepared implements IMappingProvider {
+		private final Map<String, String> classes = new HashMap<>();
+		private final Map<String, String> fields = new HashMap<>();
+		private final Map<String, String> methods = new HashMap<>();
+
+		Prepared(IMappingProvider mappings) {
+			mappings.load(classes, fields, methods);
+		}
+
+		@Override
+		public void load(Map<String, String> classMap, Map<String, String> fieldMap, Map<String, String> methodMap) {
+			classMap.putAll(classes);
+			fieldMap.putAll(fields);
+			methodMap.putAll(methods);
+		}
+
+		/** How many class, field and method mappings there are altogether */
+		public int size() {
+			return classes.size() + fields.size() + methods.size();
+		}
+	}
+
 	private TinyRemapperMappingsHelper() {
 
 	}
 
+	/** Work out the mappings between the given namespaces once for sharing between remappers, which still each fill their own maps from them */
+	public static Prepared prepare(Mappings mappings, String from, String to) {
+		return new Prepared(create(mappings, from, to));
+	}
+
 	public static IMappingProvider create(Mappings mappings, String from, String to) {
 		return (classMap, fieldMap, methodMap) -> {
 			for (ClassEntry entry : mappings.getClassEntries()) {
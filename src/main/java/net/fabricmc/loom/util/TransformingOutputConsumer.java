@@ -0,0 +1,216 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2016, 2017, 2018 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import java.util.zip.Deflater;
+
+import net.fabricmc.stitch.util.Pair;
+
+/**
+ * Writes the output of a remapper straight into a jar, passing any entries which have a transformer registered through it
+ * on the way. This allows post processing (such as remapping access transformers or editing the {@code fabric.mod.json})
+ * to happen as the jar is written, rather than rewriting the whole jar again afterwards for each change. Anything copied
+ * from another jar without a transformer is copied without being decompressed and compressed again.
+ *
+ * <p>Only the first entry written to each path is kept, so anything added before copying the non-class files from a jar
+ * will replace what the jar has at the same path.
+ */
+public class TransformingOutputConsumer implements BiConsumer<String, byte[]>, Closeable {
+	public interface EntryTransformer {//UnaryOperator<byte[]> which throws an IOException
+		byte[] transform(byte[] data) throws IOException;
+	}
+
+	private final RawZipWriter out;
+	private final List<Pair<Predicate<String>, EntryTransformer>> transformers = new ArrayList<>();
+	private final Set<String> transformed = new HashSet<>();
+	/** Deflaters for the threads compressing entries at once, which are only made as they're needed */
+	private final Queue<Deflater> deflaters = new ConcurrentLinkedQueue<>();
+
+	public TransformingOutputConsumer(Path output) throws IOException {
+		if (output.getParent() != null) Files.createDirectories(output.getParent());
+		out = new RawZipWriter(output);
+	}
+
+	/**
+	 * Rewrite the given jar in place, passing the entries at each path in the given map through their transformer
+	 *
+	 * <p>The transformers are run in parallel, so each one must be safe to run alongside the others.
+	 */
+	public static void transformEntries(Path jar, Map<String, EntryTransformer> transformers) throws IOException {
+		transformEntries(jar, jar, transformers);
+	}
+
+	/** Copy the given jar to the output, passing the entries at each path in the given map through their transformer in parallel */
+	public static void transformEntries(Path jar, Path output, Map<String, EntryTransformer> transformers) throws IOException {
+		Path temp = Files.createTempFile(output.toAbsolutePath().getParent(), output.getFileName().toString(), ".tmp");
+
+		try {
+			try (RawZipFile in = new RawZipFile(jar); RawZipWriter out = new RawZipWriter(temp)) {
+				//Everything is transformed up front so only writing the jar has to happen one entry at a time
+				Map<String, byte[]> transformed = new ConcurrentHashMap<>();
+				try {
+					transformers.entrySet().parallelStream().forEach(transformer -> {
+						RawZipFile.Entry entry = in.getEntry(transformer.getKey());
+						if (entry == null) return;
+
+						try {
+							transformed.put(entry.name, transformer.getValue().transform(in.read(entry)));
+						} catch (IOException e) {
+							throw new UncheckedIOException("Error transforming " + entry.name, e);
+						}
+					});
+				} catch (UncheckedIOException e) {
+					throw e.getCause();
+				}
+
+				for (RawZipFile.Entry entry : in.entries()) {
+					if (out.contains(entry.name)) continue;
+
+					byte[] data = transformed.get(entry.name);
+					if (data != null) {
+						out.write(entry.name, data);
+					} else {
+						out.copy(in, entry);
+					}
+				}
+			}
+
+			Files.move(temp, output, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/** Pass the entry at the given path in the jar through the given transformer when it is written */
+	public void addTransformer(String path, EntryTransformer transformer) {
+		addTransformer(path::equals, transformer);
+	}
+
+	/** Pass any entries whose paths match the given filter through the given transformer when they are written, after any transformers added before */
+	public void addTransformer(Predicate<String> paths, EntryTransformer transformer) {
+		transformers.add(Pair.of(paths, transformer));
+	}
+
+	/** Whether the transformer for the given path has been used */
+	public synchronized boolean didTransform(String path) {
+		return transformed.contains(path);
+	}
+
+	/** Copy everything other than classes from the given jar */
+	public void addNonClassFiles(Path jar) throws IOException {
+		addFiles(jar, path -> !path.endsWith("/") && !path.endsWith(".class"));
+	}
+
+	/** Copy every entry from the given jar whose path matches the given filter */
+	public void addFiles(Path jar, Predicate<String> filter) throws IOException {
+		try (RawZipFile in = new RawZipFile(jar)) {
+			for (RawZipFile.Entry entry : in.entries()) {
+				if (filter.test(entry.name)) copy(in, entry);
+			}
+		}
+	}
+
+	private void copy(RawZipFile from, RawZipFile.Entry entry) throws IOException {
+		if (transformers.stream().anyMatch(transformer -> transformer.getLeft().test(entry.name))) {
+			write(entry.name, from.read(entry));
+		} else {
+			synchronized (this) {
+				if (!out.contains(entry.name)) out.copy(from, entry);
+			}
+		}
+	}
+
+	/** Copy the given file into the jar at the given path */
+	public void addNonClassFile(Path file, String path) throws IOException {
+		write(path, Files.readAllBytes(file));
+	}
+
+	@Override
+	public void accept(String className, byte[] data) {
+		try {
+			write(className + ".class", data);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Error writing " + className, e);
+		}
+	}
+
+	private void write(String path, byte[] data) throws IOException {
+		synchronized (this) {
+			if (out.contains(path)) return;
+		}
+
+		//Only adding to the jar has to be done one entry at a time, the transforming and compressing can be done by whichever thread is here
+		boolean didTransform = false;
+		for (Pair<Predicate<String>, EntryTransformer> transformer : transformers) {
+			if (transformer.getLeft().test(path)) {
+				data = transformer.getRight().transform(data);
+				didTransform = true;
+			}
+		}
+
+		Deflater deflater = deflaters.poll();
+		if (deflater == null) deflater = RawZipWriter.newDeflater();
+		RawZipWriter.Compressed compressed;
+		try {
+			compressed = RawZipWriter.compress(data, deflater);
+		} finally {
+			deflaters.add(deflater);
+		}
+
+		synchronized (this) {
+			if (out.contains(path)) return; //Another thread wrote the same path first
+
+			if (didTransform) transformed.add(path);
+			out.write(path, compressed);
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		try {
+			out.close();
+		} finally {
+			for (Deflater deflater; (deflater = deflaters.poll()) != null;) {
+				deflater.end();
+			}
+		}
+	}
+}